@@ -0,0 +1,147 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministicky generovane sady SMILES retezcu pro mereni vykonu. Do sady se dostanou pouze molekuly, ktere umime pojmenovat,
+ * aby se mereni nezkreslilo vyjimkami.
+ */
+public enum Corpus {
+    /**
+     * Nerozvetvene alkany.
+     */
+    LINEAR {
+        @Override
+        String generate(int size, Random random) {
+            return "C".repeat(Math.max(2, size - random.nextInt(4)));
+        }
+    },
+    /**
+     * Silne rozvetvene alkany, kde se kazdy novy uhlik navaze na nahodny uhlik s volnou vazbou.
+     */
+    BRANCHED {
+        @Override
+        String generate(int size, Random random) {
+            List<List<Integer>> children = new ArrayList<>();
+            List<Integer> free = new ArrayList<>();
+            children.add(new ArrayList<>());
+            free.add(0);
+            for (int atom = 1; atom < size; atom++) {
+                int parent = free.get(random.nextInt(free.size()));
+                children.get(parent).add(atom);
+                children.add(new ArrayList<>());
+                free.add(atom);
+                // Koren muze mit 4 potomky, ostatni uhliky 3, protoze jednu vazbu zabira rodic.
+                if (children.get(parent).size() == (parent == 0 ? 4 : 3))
+                    free.remove(Integer.valueOf(parent));
+            }
+            StringBuilder smiles = new StringBuilder();
+            writeTree(0, children, smiles);
+            return smiles.toString();
+        }
+    },
+    /**
+     * Cykloalkany s alkylovymi substituenty.
+     */
+    RINGS {
+        @Override
+        String generate(int size, Random random) {
+            int ringSize = Math.min(size, 3 + random.nextInt(6));
+            int remaining = size - ringSize;
+            StringBuilder smiles = new StringBuilder("C1");
+            for (int i = 1; i < ringSize; i++) {
+                smiles.append('C');
+                if (remaining > 0 && random.nextBoolean()) {
+                    int length = 1 + random.nextInt(Math.min(remaining, Math.max(1, size / 4)));
+                    smiles.append('(').append("C".repeat(length)).append(')');
+                    remaining -= length;
+                }
+            }
+            smiles.append('1');
+            smiles.append("C".repeat(remaining));
+            return smiles.toString();
+        }
+    },
+    /**
+     * Retezce s velkym poctem funkcnich skupin.
+     */
+    FUNCTIONAL_GROUPS {
+        private static final String[] GROUPS = {"(O)", "(N)", "(S)", "(N(O)(O))", "(=O)"};
+
+        @Override
+        String generate(int size, Random random) {
+            // Nazev umi vyjadrit nejvyse tolik stejnych skupin, kolik je nasobnych predpon.
+            int[] counts = new int[GROUPS.length];
+            StringBuilder smiles = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                smiles.append('C');
+                int group = random.nextInt(GROUPS.length);
+                if (random.nextBoolean() && counts[group] < Nomenclature.MULTIPLICITY.length) {
+                    smiles.append(GROUPS[group]);
+                    counts[group]++;
+                }
+            }
+            if (random.nextBoolean())
+                smiles.append("C(=O)(O)");
+            return smiles.toString();
+        }
+    };
+
+    private static final int MAX_ATTEMPTS = 1000;
+
+    /**
+     * Vygeneruje jednu molekulu dane velikosti.
+     * @param size Priblizny pocet uhliku.
+     * @param random Zdroj nahodnosti.
+     * @return SMILES retezec.
+     */
+    abstract String generate(int size, Random random);
+
+    /**
+     * Vygeneruje sadu pojmenovatelnych molekul. Pro stejne parametry vrati vzdy stejnou sadu.
+     * @param size Priblizny pocet uhliku v molekule.
+     * @param count Pocet molekul v sade.
+     * @return SMILES retezce.
+     */
+    public String[] generate(int size, int count) {
+        Random random = new Random(31L * size + ordinal());
+        List<String> corpus = new ArrayList<>(count);
+        for (int attempt = 0; corpus.size() < count && attempt < MAX_ATTEMPTS; attempt++) {
+            String smiles = generate(size, random);
+            try {
+                Nomenclature.getName(smiles);
+                corpus.add(smiles);
+            } catch (Exception e) {
+                // Molekulu neumime pojmenovat, do sady ji nezaradime.
+            }
+        }
+        if (corpus.isEmpty())
+            throw new IllegalStateException("Nepodarilo se vygenerovat zadnou molekulu pro sadu " + this + " velikosti " + size + ".");
+        // Pokud se nepodarilo vygenerovat dost ruznych molekul, sadu doplnime opakovanim.
+        for (int i = 0; corpus.size() < count; i++)
+            corpus.add(corpus.get(i));
+        return corpus.toArray(new String[0]);
+    }
+
+    /**
+     * Zapise strom uhliku jako SMILES, posledni potomek pokracuje retezec, ostatni jsou vetve.
+     * @param atom Zapisovany uhlik.
+     * @param children Seznamy potomku jednotlivych uhliku.
+     * @param smiles Doposavad vytvoreny retezec.
+     */
+    private static void writeTree(int atom, List<List<Integer>> children, StringBuilder smiles) {
+        smiles.append('C');
+        List<Integer> atomChildren = children.get(atom);
+        for (int i = 0; i < atomChildren.size(); i++) {
+            if (i < atomChildren.size() - 1) {
+                smiles.append('(');
+                writeTree(atomChildren.get(i), children, smiles);
+                smiles.append(')');
+            } else {
+                writeTree(atomChildren.get(i), children, smiles);
+            }
+        }
+    }
+}
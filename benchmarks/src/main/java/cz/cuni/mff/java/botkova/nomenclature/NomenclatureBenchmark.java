@@ -0,0 +1,128 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mereni jednotlivych kroku pojmenovani molekuly i celeho procesu od SMILES retezce po nazev.
+ * Kazda operace zpracuje celou sadu molekul, vysledky jsou prepocteny na jednu molekulu.
+ * Spusteni: {@code java -jar benchmarks/target/benchmarks.jar}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NomenclatureBenchmark {
+    static final int MOLECULES = 32;
+
+    /**
+     * Sada SMILES retezcu dane velikosti.
+     */
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"LINEAR", "BRANCHED", "RINGS", "FUNCTIONAL_GROUPS"})
+        public Corpus corpus;
+
+        @Param({"10", "40", "90"})
+        public int size;
+
+        String[] smiles;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            smiles = corpus.generate(size, MOLECULES);
+        }
+    }
+
+    /**
+     * Nactene molekuly, ktere se pred kazdou operaci nacitaji znovu. Molekula si vysledek identifikace struktur pamatuje
+     * a dalsi volani identifyStructures nic nepocitaji, stejne tak pojmenovani uz identifikovane molekuly. Bez noveho
+     * nacteni by se merilo jen vraceni ulozenych vysledku, proto nove nacitani neodstranovat.
+     */
+    @State(Scope.Thread)
+    public static class Parsed {
+        Molecule[] molecules = new Molecule[MOLECULES];
+
+        @Setup(Level.Invocation)
+        public void parse(Input input) throws Exception {
+            for (int i = 0; i < MOLECULES; i++)
+                molecules[i] = SMILESParser.parseMolecule(input.smiles[i]);
+        }
+    }
+
+    /**
+     * Molekuly s identifikovanymi strukturami, pripravene pro hledani hlavniho retezce.
+     */
+    @State(Scope.Thread)
+    public static class Identified {
+        Molecule[] molecules = new Molecule[MOLECULES];
+
+        @Setup(Level.Invocation)
+        public void identify(Input input) throws Exception {
+            for (int i = 0; i < MOLECULES; i++) {
+                molecules[i] = SMILESParser.parseMolecule(input.smiles[i]);
+                molecules[i].identifyStructures();
+            }
+        }
+    }
+
+    /**
+     * Kandidatni cesty hlavniho retezce pripravene k filtrovani.
+     */
+    @State(Scope.Thread)
+    public static class Candidates {
+        Filter[] filters = new Filter[MOLECULES];
+
+        @Setup(Level.Invocation)
+        public void collect(Input input) throws Exception {
+            for (int i = 0; i < MOLECULES; i++) {
+                Molecule molecule = SMILESParser.parseMolecule(input.smiles[i]);
+                molecule.identifyStructures();
+                filters[i] = new Chain().getCandidatePaths(molecule);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOLECULES)
+    public void parseMolecule(Input input, Blackhole blackhole) throws Exception {
+        for (String smiles : input.smiles)
+            blackhole.consume(SMILESParser.parseMolecule(smiles));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOLECULES)
+    public void identifyStructures(Parsed parsed, Blackhole blackhole) throws Exception {
+        for (Molecule molecule : parsed.molecules) {
+            molecule.identifyStructures();
+            blackhole.consume(molecule.mostSeniorGroup);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOLECULES)
+    public void chain(Identified identified, Blackhole blackhole) {
+        for (Molecule molecule : identified.molecules)
+            blackhole.consume(new Chain(molecule));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOLECULES)
+    public void filter(Candidates candidates, Blackhole blackhole) {
+        for (Filter filter : candidates.filters) {
+            // Molekula s jedinym uhlikem nema co filtrovat.
+            if (filter != null)
+                blackhole.consume(filter.filter());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOLECULES)
+    public void getName(Input input, Blackhole blackhole) throws Exception {
+        for (String smiles : input.smiles)
+            blackhole.consume(Nomenclature.getName(smiles));
+    }
+}
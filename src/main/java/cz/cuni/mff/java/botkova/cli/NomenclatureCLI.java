@@ -0,0 +1,297 @@
+package cz.cuni.mff.java.botkova.cli;
+
+import cz.cuni.mff.java.botkova.nomenclature.BatchNomenclature;
+import cz.cuni.mff.java.botkova.nomenclature.HistogramMetrics;
+import cz.cuni.mff.java.botkova.nomenclature.LatencyHistogram;
+import cz.cuni.mff.java.botkova.nomenclature.Metrics;
+import cz.cuni.mff.java.botkova.nomenclature.NameCache;
+import cz.cuni.mff.java.botkova.nomenclature.Nomenclature;
+import cz.cuni.mff.java.botkova.nomenclature.SMILESFile;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Davkove pojmenovani molekul z prikazove radky bez GUI. Molekuly ve SMILES formatu se ctou ze standardniho vstupu nebo ze
+ * souboru, jedna na radek, a vysledky se zapisuji ve formatu TSV se sloupci smiles, name a error. Na konci se na standardni
+ * chybovy vystup vypise propustnost, percentily doby zpracovani jedne molekuly a pocty chyb podle druhu.
+ */
+public class NomenclatureCLI {
+    private static final String USAGE = """
+            Pouziti: NomenclatureCLI [volby] [soubor...]
+            Pojmenuje molekuly ve SMILES formatu, jednu na radek, ze souboru nebo ze standardniho vstupu (bez souboru nebo -).
+            Vysledky zapise ve formatu TSV se sloupci smiles, name a error.
+              -t, --threads N       pocet vlaken (vychozi pocet procesoru)
+              -c, --chunk-size B    nejvetsi velikost useku souboru v bajtech, ktere se zpracovavaji paralelne (vychozi 64 MiB)
+              -u, --unordered       vypisovat vysledky v poradi dokonceni misto poradi vstupu
+                  --cache N         pocet nazvu ve vyrovnavaci pameti podle zapisu SMILES (vychozi 0, vypnuto)
+              -o, --output SOUBOR   zapsat vysledky do souboru misto na standardni vystup
+              -m, --metrics         vypsat dobu behu a alokovanou pamet jednotlivych fazi pojmenovani
+              -h, --help            vypsat napovedu
+            """;
+
+    /**
+     * Nastaveni z prikazove radky.
+     */
+    static class Options {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunkSize = SMILESFile.DEFAULT_CHUNK_SIZE;
+        boolean ordered = true;
+        int cacheSize = 0;
+        String output = null;
+        boolean metrics = false;
+        boolean help = false;
+        List<String> inputs = new ArrayList<>();
+
+        /**
+         * @param args Argumenty prikazove radky.
+         * @throws InvalidArgumentException
+         */
+        Options(String[] args) throws InvalidArgumentException {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-t", "--threads" -> threads = getPositive(args, ++i);
+                    case "-c", "--chunk-size" -> chunkSize = getPositive(args, ++i);
+                    case "-u", "--unordered" -> ordered = false;
+                    case "--cache" -> cacheSize = getPositive(args, ++i);
+                    case "-o", "--output" -> output = getValue(args, ++i);
+                    case "-m", "--metrics" -> metrics = true;
+                    case "-h", "--help" -> help = true;
+                    default -> {
+                        if (args[i].startsWith("-") && !args[i].equals("-"))
+                            throw new InvalidArgumentException("Neznama volba " + args[i] + ".");
+                        inputs.add(args[i]);
+                    }
+                }
+            }
+            if (inputs.isEmpty())
+                inputs.add("-");
+        }
+
+        private static String getValue(String[] args, int i) throws InvalidArgumentException {
+            if (i >= args.length)
+                throw new InvalidArgumentException("Volba " + args[i - 1] + " vyzaduje hodnotu.");
+            return args[i];
+        }
+
+        private static int getPositive(String[] args, int i) throws InvalidArgumentException {
+            String value = getValue(args, i);
+            try {
+                int number = Integer.parseInt(value);
+                if (number > 0)
+                    return number;
+            } catch (NumberFormatException e) {
+                // Chybu ohlasime nize.
+            }
+            throw new InvalidArgumentException("Volba " + args[i - 1] + " vyzaduje kladne cislo, zadano " + value + ".");
+        }
+    }
+
+    public static class InvalidArgumentException extends Exception {
+        public InvalidArgumentException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Souhrn zpracovanych molekul.
+     */
+    static class Statistics {
+        long molecules = 0;
+        long errors = 0;
+        final Map<String, Long> errorCounts = new HashMap<>(); // Pocet chyb podle tridy vyjimky
+        final LatencyHistogram latencies = new LatencyHistogram();
+        long firstResultUptime = -1; // Doba od spusteni JVM do prvniho vysledku v milisekundach
+
+        synchronized void add(BatchNomenclature.Result result) {
+            if (molecules == 0)
+                firstResultUptime = ManagementFactory.getRuntimeMXBean().getUptime();
+            molecules++;
+            latencies.record(result.nanos());
+            if (!result.isSuccess()) {
+                errors++;
+                errorCounts.merge(result.error().getClass().getSimpleName(), 1L, Long::sum);
+            }
+        }
+
+        /**
+         * Vypise souhrn.
+         * @param err Vystup.
+         * @param nanos Celkova doba zpracovani v nanosekundach.
+         */
+        synchronized void print(PrintStream err, long nanos) {
+            double seconds = nanos / 1e9;
+            err.printf(Locale.ROOT, "Pojmenovano %d molekul za %.3f s (%.1f molekul/s), chyb: %d%n",
+                    molecules, seconds, seconds > 0 ? molecules / seconds : 0.0, errors);
+            err.printf(Locale.ROOT, "Doba na molekulu: p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                    latencies.getPercentile(50) / 1e6, latencies.getPercentile(99) / 1e6, latencies.getMax() / 1e6);
+            if (firstResultUptime != -1)
+                err.printf(Locale.ROOT, "Prvni nazev %d ms od spusteni JVM%n", firstResultUptime);
+            if (!errorCounts.isEmpty()) {
+                err.println("Chyby:");
+                errorCounts.entrySet().stream()
+                        .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                        .forEach(entry -> err.printf(Locale.ROOT, "%10d  %s%n", entry.getValue(), entry.getKey()));
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    /**
+     * Pojmenuje molekuly podle argumentu prikazove radky.
+     * @param args Argumenty prikazove radky.
+     * @param in Standardni vstup.
+     * @param out Standardni vystup.
+     * @param err Chybovy vystup, na ktery se vypise souhrn.
+     * @return Navratovy kod, 0 pri uspechu, 1 pri chybe vstupu nebo vystupu, 2 pri chybnych argumentech.
+     */
+    static int run(String[] args, InputStream in, PrintStream out, PrintStream err) {
+        Options options;
+        try {
+            options = new Options(args);
+        } catch (InvalidArgumentException e) {
+            err.println(e.getMessage());
+            err.print(USAGE);
+            return 2;
+        }
+        if (options.help) {
+            out.print(USAGE);
+            return 0;
+        }
+
+        NameCache cache = options.cacheSize > 0 ? new NameCache(options.cacheSize, Long.MAX_VALUE) : null;
+        Statistics statistics = new Statistics();
+        HistogramMetrics metrics = options.metrics ? new HistogramMetrics() : null;
+        Metrics previousMetrics = Nomenclature.getMetrics();
+        if (metrics != null)
+            Nomenclature.setMetrics(metrics);
+        long start = System.nanoTime();
+        try (Writer writer = options.output != null
+                ? Files.newBufferedWriter(Path.of(options.output), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(new FilterOutputStream(out) {
+                    // Standardni vystup nezavirame.
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                }, StandardCharsets.UTF_8))) {
+            writer.write("smiles\tname\terror\n");
+            Consumer<BatchNomenclature.Result> consumer = result -> {
+                statistics.add(result);
+                write(writer, result);
+            };
+            for (String input : options.inputs) {
+                if (input.equals("-"))
+                    nameStream(in, options, cache, consumer);
+                else
+                    nameFile(Path.of(input), options, cache, consumer);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            err.println("Chyba vstupu nebo vystupu: " + e.getMessage());
+            return 1;
+        } finally {
+            Nomenclature.setMetrics(previousMetrics);
+        }
+        statistics.print(err, System.nanoTime() - start);
+        if (metrics != null)
+            err.print(metrics);
+        return 0;
+    }
+
+    /**
+     * Pojmenuje molekuly z proudu. Za SMILES retezcem muze po mezere nebo tabulatoru nasledovat identifikator, ktery se
+     * ignoruje, prazdne radky se preskakuji.
+     * @param in Vstup.
+     * @param options Nastaveni.
+     * @param cache Vyrovnavaci pamet nazvu, nebo null.
+     * @param consumer Zpracovani vysledku.
+     */
+    private static void nameStream(InputStream in, Options options, NameCache cache, Consumer<BatchNomenclature.Result> consumer) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Stream<String> smiles = reader.lines().map(NomenclatureCLI::getSmiles).filter(line -> !line.isEmpty());
+        try (BatchNomenclature batch = new BatchNomenclature(options.threads, 4 * options.threads, options.ordered, cache)) {
+            batch.getNames(smiles).forEach(consumer);
+        }
+    }
+
+    /**
+     * Pojmenuje molekuly ze souboru. Useky souboru se zpracovavaji paralelne na fondu s danym poctem vlaken.
+     * @param path Cesta k souboru.
+     * @param options Nastaveni.
+     * @param cache Vyrovnavaci pamet nazvu, nebo null.
+     * @param consumer Zpracovani vysledku, pri neusporadanem vystupu se vola z vice vlaken.
+     * @throws IOException
+     */
+    private static void nameFile(Path path, Options options, NameCache cache, Consumer<BatchNomenclature.Result> consumer) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(options.threads);
+        try (SMILESFile file = new SMILESFile(path, options.chunkSize)) {
+            // Paralelni proud spusteny z vlakna fondu pouziva tento fond misto spolecneho.
+            pool.submit(() -> {
+                if (options.ordered)
+                    file.getNames(cache).forEachOrdered(consumer);
+                else
+                    file.getNames(cache).forEach(result -> {
+                        synchronized (consumer) {
+                            consumer.accept(result);
+                        }
+                    });
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Zpracovani souboru bylo preruseno.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause)
+                throw cause.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @param line Radek vstupu.
+     * @return SMILES retezec do prvni mezery nebo tabulatoru.
+     */
+    private static String getSmiles(String line) {
+        line = line.strip();
+        int end = 0;
+        while (end < line.length() && line.charAt(end) != ' ' && line.charAt(end) != '\t')
+            end++;
+        return line.substring(0, end);
+    }
+
+    /**
+     * Zapise vysledek jako jeden radek TSV.
+     * @param writer Vystup.
+     * @param result Vysledek pojmenovani.
+     */
+    private static void write(Writer writer, BatchNomenclature.Result result) {
+        try {
+            writer.write(result.smiles());
+            writer.write('\t');
+            if (result.isSuccess())
+                writer.write(result.name());
+            writer.write('\t');
+            if (!result.isSuccess()) {
+                Exception error = result.error();
+                String message = error.getMessage() != null ? error.getClass().getSimpleName() + ": " + error.getMessage()
+                        : error.getClass().getSimpleName();
+                writer.write(message.replace('\t', ' ').replace('\r', ' ').replace('\n', ' '));
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
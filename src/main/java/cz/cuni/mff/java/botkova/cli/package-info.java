@@ -0,0 +1,9 @@
+package cz.cuni.mff.java.botkova.cli;
+/**
+ * Organicke nazvoslovi
+ * Alexandra Botkova, II. rocnik
+ * Letni semestr, 2023/2024
+ * Pokrocile programování v jazyce Java NPRG013
+ *
+ * Tento balicek obsahuje tridy pro davkove pojmenovani molekul z prikazove radky bez GUI.
+ */
\ No newline at end of file
@@ -0,0 +1,99 @@
+package cz.cuni.mff.java.botkova.gui;
+
+import javax.swing.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Pojmenovani nakreslene molekuly na pozadi, aby kresleni nezamrzalo ani u velkych molekul. Po zmene se molekula pojmenuje
+ * az po kratke prodleve bez dalsich zmen. Kazda dalsi zmena starsi pozadavek zrusi a vysledek pojmenovani, ktere uz bezi,
+ * se zahodi. Pojmenovani bezi ve vlastnim fondu s o jedno vlakno mene, nez je procesoru, takze ani jeho paralelni casti
+ * nesoupezi s vlaknem, ktere prekresluje okno. Vsechny metody se volaji z vlakna udalosti Swingu.
+ */
+class BackgroundNaming {
+    static final int DEFAULT_DELAY = 300; // Prodleva po posledni zmene v milisekundach
+
+    /**
+     * Vysledek pojmenovani.
+     * @param name Nazev molekuly, nebo null pri chybe.
+     * @param error Chyba pojmenovani, nebo null.
+     * @param requested True, pokud si pojmenovani vyzadal uzivatel, false u prubezneho nahledu.
+     */
+    record Result(String name, Exception error, boolean requested) {
+    }
+
+    private final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    private final Timer timer;
+    private final Supplier<Callable<String>> naming;
+    private final Consumer<Result> onResult;
+    private Future<?> running = null;
+    private long generation = 0; // Cislo posledniho pozadavku, starsi vysledky se zahazuji
+
+    /**
+     * @param delay Prodleva po posledni zmene v milisekundach.
+     * @param naming Pripravi ulohu, ktera molekulu pojmenuje. Vola se z vlakna udalosti, uloha pak bezi na pozadi, a proto
+     *               nesmi pracovat s daty, ktera se pri kresleni meni.
+     * @param onResult Zpracovani vysledku, vola se z vlakna udalosti jen pro posledni pozadavek.
+     */
+    BackgroundNaming(int delay, Supplier<Callable<String>> naming, Consumer<Result> onResult) {
+        this.naming = naming;
+        this.onResult = onResult;
+        timer = new Timer(delay, e -> start(false));
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Oznami zmenu molekuly. Probihajici pojmenovani se zrusi a nove se spusti po prodleve.
+     */
+    void moleculeChanged() {
+        cancel();
+        timer.restart();
+    }
+
+    /**
+     * Pojmenuje molekulu hned, bez prodlevy.
+     */
+    void nameNow() {
+        start(true);
+    }
+
+    /**
+     * Zrusi cekajici i probihajici pojmenovani.
+     */
+    void cancel() {
+        timer.stop();
+        generation++;
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    /**
+     * Spusti pojmenovani na pozadi.
+     * @param requested True, pokud si pojmenovani vyzadal uzivatel.
+     */
+    private void start(boolean requested) {
+        cancel();
+        long current = generation;
+        Callable<String> task = naming.get();
+        running = pool.submit(() -> {
+            Result result;
+            try {
+                result = new Result(task.call(), null, requested);
+            } catch (Exception e) {
+                result = new Result(null, e, requested);
+            }
+            Result finished = result;
+            SwingUtilities.invokeLater(() -> {
+                if (current == generation) {
+                    running = null;
+                    onResult.accept(finished);
+                }
+            });
+        });
+    }
+}
@@ -5,15 +5,25 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Trida pro nakresleni moelkuly.
  */
 public class DrawGUI {
+    public static final int DEFAULT_HISTORY_DEPTH = 1000;
+    private static final int HIT_RADIUS = 10; // Nejvetsi vzdalenost kliknuti od bodu
+    private static final int HIT_TOLERANCE = 3; // Nejvetsi vzdalenost kliknuti od hrany
+    private static final int BOND_LENGTH = 40; // Delka vazby importovane molekuly v pixelech
+    private static final int IMPORT_MARGIN = 30; // Odsazeni importovane molekuly od okraje plochy
+
     private List<AtomPoint> points = new ArrayList<>();
     private List<Edge> edges = new ArrayList<>();
+    private SpatialIndex index = new SpatialIndex(HIT_RADIUS, HIT_TOLERANCE); // Mrizka pro hledani bodu a hran pod mysi
     private AtomPoint selectedPoint = null;
     private Edge selectedEdge = null;
     private AtomType currentAtomType = AtomType.CARBON; // Default je uhlik.
@@ -21,15 +31,28 @@ public class DrawGUI {
     private List<Atom> atoms = new ArrayList<>();
     private Molecule molecule;
     private final JPanel mainPanel;
+    private final DrawingPanel drawingPanel;
     private final JTextArea nameDisplayArea;
-    private final Stack<State> historyStack = new Stack<>(); // Zasobnik na ulozeni stavu.
+    private final History history; // Upravy kresby pro akce zpet a znovu
+    private int nextId = 0; // ID dalsiho bodu, ID se neopakuji ani po smazani bodu
+    private final BackgroundNaming naming; // Prubezne pojmenovani kresby na pozadi
 
     public DrawGUI(Molecule molecule) {
+        this(molecule, DEFAULT_HISTORY_DEPTH);
+    }
+
+    /**
+     * @param molecule Molekula.
+     * @param historyDepth Nejvetsi pocet uprav, ktere lze vratit.
+     */
+    public DrawGUI(Molecule molecule, int historyDepth) {
         this.molecule = molecule;
+        history = new History(historyDepth);
+        naming = new BackgroundNaming(BackgroundNaming.DEFAULT_DELAY, this::prepareNaming, this::showName);
 
         mainPanel = new JPanel(new BorderLayout());
-        DrawingPanel drawingPanel = new DrawingPanel();
-        mainPanel.add(drawingPanel, BorderLayout.CENTER);
+        drawingPanel = new DrawingPanel();
+        mainPanel.add(new JScrollPane(drawingPanel), BorderLayout.CENTER);
 
         JPanel atomControlPanel = new JPanel();
         atomControlPanel.setLayout(new BoxLayout(atomControlPanel, BoxLayout.Y_AXIS));
@@ -76,20 +99,16 @@ public class DrawGUI {
         JButton nameButton = new JButton("Pojmenovat");
         JButton eraseButton = new JButton("Smazat molekulu");
         JButton undoButton = new JButton("Zpet");
+        JButton redoButton = new JButton("Znovu");
 
-        deleteButton.addActionListener(e -> {
-            saveState(); // Ulozeni stavu pred odstranenim
-            deleteSelected();
-        });
+        deleteButton.addActionListener(e -> deleteSelected());
 
-        nameButton.addActionListener(e -> nameMolecule());
+        nameButton.addActionListener(e -> naming.nameNow());
 
-        eraseButton.addActionListener(e -> {
-            saveState(); // Ulozeni stavu pred odstranenim
-            eraseMolecule();
-        });
+        eraseButton.addActionListener(e -> eraseMolecule());
 
         undoButton.addActionListener(e -> undoAction());
+        redoButton.addActionListener(e -> redoAction());
 
         edgeControlPanel.add(deleteButton);
         edgeControlPanel.add(Box.createRigidArea(new Dimension(0, 5))); // Odmezereni
@@ -98,6 +117,8 @@ public class DrawGUI {
         edgeControlPanel.add(eraseButton);
         edgeControlPanel.add(Box.createRigidArea(new Dimension(0, 5))); // Odmezereni
         edgeControlPanel.add(undoButton);
+        edgeControlPanel.add(Box.createRigidArea(new Dimension(0, 5))); // Odmezereni
+        edgeControlPanel.add(redoButton);
 
         mainPanel.add(edgeControlPanel, BorderLayout.EAST);
 
@@ -113,10 +134,10 @@ public class DrawGUI {
             @Override
             public void mousePressed(MouseEvent e) {
                 Point p = e.getPoint();
+                repaintSelection(); // Zrusi zvyrazneni puvodniho vyberu
                 selectedEdge = null; // Reset
 
                 if (e.getButton() == MouseEvent.BUTTON1) { // Leve tlacitko to pridat/ vybrat bod/ hranu
-                    saveState(); // Ulozit stav pred pridanim
                     AtomPoint foundPoint = findPoint(p);
                     if (foundPoint != null) {
                         selectedPoint = foundPoint;
@@ -127,94 +148,63 @@ public class DrawGUI {
                         if (foundEdge != null) {
                             selectedEdge = foundEdge;
                         } else { // Pokud jsme nevybrali nic, tak vytvorime novy bod
-                            AtomPoint newPoint = new AtomPoint(p, currentAtomType, points.size());
-                            points.add(newPoint);
+                            AtomPoint newPoint = new AtomPoint(p, currentAtomType, nextId++);
                             selectedPoint = newPoint;
 
-                            Atom newAtom = null;
-                            switch (currentAtomType) {
-                                case CARBON -> {
-                                    newAtom = new Carbon();
-                                    molecule.start = newAtom;
-                                }
-                                case OXYGEN -> newAtom = new Oxygen();
-                                case NITROGEN -> newAtom = new Nitrogen();
-                                case SULFUR -> newAtom = new Sulphur();
-                            }
+                            Atom newAtom = createAtom(currentAtomType);
                             newAtom.ID = newPoint.id;
-                            atoms.add(newAtom);
+                            newPoint.atom = newAtom;
+                            history.execute(new AddAtom(newPoint));
+                            naming.moleculeChanged();
                         }
                     }
                 } else if (e.getButton() == MouseEvent.BUTTON3) { // Prave tlacitko na vytvoreni nove hrany
                     if (selectedPoint != null) {
-                        saveState(); // Ulozime stav pred vytvorenim nove hrany
-                        Atom atom1 = atoms.get(selectedPoint.id);
+                        Atom atom1 = selectedPoint.atom;
 
                         AtomPoint endPoint = findPoint(p);
                         if (endPoint != null && !endPoint.equals(selectedPoint)) {
-                            boolean exc = false;
-                            Atom atom2 = atoms.get(endPoint.id);
-                            try {
-                                atom1.bindAtoms(atom2, edgeType);
-                            } catch (Atom.LigancyExceededException ex) {
-                                undoAction();
-                                exc = true;
+                            Atom atom2 = endPoint.atom;
+                            // Volna vazebna mista zjistime predem, aby se atomy pri prekroceni ligance nenavazaly jen castecne.
+                            if (atom1.countHydrogens() < edgeType || atom2.countHydrogens() < edgeType) {
                                 JOptionPane.showMessageDialog(
                                         null,
-                                        ex.getMessage(),
+                                        new Atom.LigancyExceededException().getMessage(),
                                         "Error",
                                         JOptionPane.ERROR_MESSAGE
                                 );
+                            } else {
+                                history.execute(new AddBond(new Edge(selectedPoint, endPoint, edgeType)));
+                                naming.moleculeChanged();
                             }
-                            if (!exc) edges.add(new Edge(selectedPoint, endPoint, edgeType));
                             selectedPoint = null;
                         }
                     }
                 } else if (e.getClickCount() == 2) { // Dvojklik na smazani hrany nebo bodu
-                    saveState(); // Ulozime stav pred smazanim
                     p = e.getPoint();
                     AtomPoint foundPoint = findPoint(p);
                     if (foundPoint != null) {
-                        deletePoint(foundPoint);
+                        history.execute(new RemoveAtom(foundPoint));
+                        naming.moleculeChanged();
                     } else {
                         Edge foundEdge = findEdge(p);
                         if (foundEdge != null) {
-                            edges.remove(foundEdge);
+                            history.execute(new RemoveBond(foundEdge));
+                            naming.moleculeChanged();
                         }
                     }
                 }
-                drawingPanel.repaint();
+                repaintSelection();
             }
         });
     }
 
-    private void saveState() {
-        List<AtomPoint> previousPoints = new ArrayList<>(points);
-        List<Edge> previousEdges = new ArrayList<>(edges);
-        List<Atom> previousAtoms = new ArrayList<>(atoms);
-        historyStack.push(new State(previousPoints, previousEdges, previousAtoms));
-    }
-
+    /**
+     * Vrati posledni upravu kresby.
+     */
     private void undoAction() {
-        if (!historyStack.isEmpty()) {
-            State previousState = historyStack.pop();
-            this.points = previousState.points();
-            this.edges = previousState.edges();
-            this.atoms = previousState.atoms();
-            mainPanel.repaint(); // Prekreslime
-
-            // Start molekuly bude uhlik
-            if (!atoms.isEmpty()) {
-                for (Atom atom : atoms) {
-                    if (atom.symbol == 'C') {
-                        molecule.start = atom;
-                        break;
-                    }
-                }
-            } else {
-                // TODO
-                molecule.start = null;
-            }
+        if (history.undo()) {
+            historyChanged();
         } else {
             JOptionPane.showMessageDialog(
                     null,
@@ -225,13 +215,56 @@ public class DrawGUI {
         }
     }
 
+    /**
+     * Znovu provede posledni vracenou upravu kresby.
+     */
+    private void redoAction() {
+        if (history.redo()) {
+            historyChanged();
+        } else {
+            JOptionPane.showMessageDialog(
+                    null,
+                    "Neni co znovu provest.",
+                    "Znovu",
+                    JOptionPane.INFORMATION_MESSAGE
+            );
+        }
+    }
+
+    /**
+     * Po vraceni nebo znovuprovedeni upravy zrusi vyber, ktery se mohl tykat odebranych bodu, a molekulu znovu pojmenuje.
+     */
+    private void historyChanged() {
+        repaintSelection();
+        selectedPoint = null;
+        selectedEdge = null;
+
+        // Start molekuly bude uhlik
+        if (!atoms.isEmpty()) {
+            for (Atom atom : atoms) {
+                if (atom.symbol == 'C') {
+                    molecule.start = atom;
+                    break;
+                }
+            }
+        } else {
+            // TODO
+            molecule.start = null;
+        }
+        naming.moleculeChanged();
+    }
+
     /**
      * Pred pojmenovanim musi body a hrany tvorit souvisly graf.
+     * @param atoms Atomy molekuly.
      * @return true pokud jsou vsechny body spojene
      */
-    private boolean checkConnectivity() {
+    private static boolean checkConnectivity(List<Atom> atoms) {
+        Map<Atom, Integer> indices = new IdentityHashMap<>();
+        for (Atom atom : atoms)
+            indices.put(atom, indices.size());
         boolean[] visited = new boolean[atoms.size()];
-        DFS(atoms.getFirst(), visited);
+        DFS(atoms.getFirst(), indices, visited);
         for (boolean isConnected : visited) {
             if (!isConnected)
                 return false;
@@ -240,64 +273,160 @@ public class DrawGUI {
     }
 
     /**
-     * Pomocna funkce pro checkConnectivity().
+     * Pomocna funkce pro checkConnectivity(). Prochazi do hloubky s vlastnim zasobnikem, kazdy atom se na nej dostane nejvyse jednou.
      * @param atom
+     * @param indices Poradi atomu v seznamu atomu molekuly.
      * @param visited
      */
-    private void DFS(Atom atom, boolean[] visited) {
-        visited[atom.ID] = true;
-        for (Atom ligand : atom.ligands) {
-            if (ligand != null && !visited[ligand.ID])
-                DFS(ligand, visited);
+    private static void DFS(Atom atom, Map<Atom, Integer> indices, boolean[] visited) {
+        Atom[] stack = new Atom[visited.length];
+        int depth = 0;
+        stack[depth++] = atom;
+        visited[indices.get(atom)] = true;
+        while (depth > 0) {
+            Atom current = stack[--depth];
+            for (Atom ligand : current.ligands) {
+                if (ligand != null && !visited[indices.get(ligand)]) {
+                    visited[indices.get(ligand)] = true;
+                    stack[depth++] = ligand;
+                }
+            }
         }
     }
 
     /**
-     * Metoda pro pojmenovani molekuly.
+     * Pripravi pojmenovani molekuly na pozadi. Nakreslene atomy se zkopiruji, aby se kopie mohla pojmenovat, zatimco uzivatel
+     * kresli dal. Vazby na atomy, ktere uz ve vykresu nejsou, se vynechaji.
+     * @return Ulohu, ktera kopii molekuly pojmenuje.
      */
-    private void nameMolecule() {
-        molecule = new Molecule(new Nitrogen());
+    private Callable<String> prepareNaming() {
+        Map<Atom, Atom> copies = new IdentityHashMap<>();
+        List<Atom> copiedAtoms = new ArrayList<>(atoms.size());
+        for (Atom atom : atoms) {
+            Atom copy = new Atom(atom);
+            copies.put(atom, copy);
+            copiedAtoms.add(copy);
+        }
+        for (Atom atom : atoms) {
+            Atom copy = copies.get(atom);
+            for (int i = 0; i < atom.ligands.length; i++)
+                copy.ligands[i] = atom.ligands[i] != null ? copies.get(atom.ligands[i]) : null;
+        }
+        return () -> nameMolecule(copiedAtoms);
+    }
+
+    /**
+     * Metoda pro pojmenovani molekuly. Start molekuly je posledni nakresleny uhlik.
+     * @param atoms Atomy molekuly, se kterymi nikdo jiny nepracuje.
+     * @return Nazev molekuly.
+     * @throws EmptyMoleculeException
+     * @throws DisconnectedAtomsException
+     * @throws Molecule.InvalidLigandConfigurationException
+     */
+    private static String nameMolecule(List<Atom> atoms) throws EmptyMoleculeException, DisconnectedAtomsException, Molecule.InvalidLigandConfigurationException {
+        Molecule molecule = new Molecule(new Nitrogen());
         for (Atom atom : atoms) {
-            atom.reset();
             if (atom.symbol == 'C') {
                 molecule.start = atom;
             }
         }
-        try {
-            if (molecule.start.symbol == 'N')
-                throw new EmptyMoleculeException();
+        if (molecule.start.symbol == 'N')
+            throw new EmptyMoleculeException();
 
-            boolean isConnected = checkConnectivity();
-            if (!isConnected)
-                throw new DisconnectedAtomsException();
-
-            molecule.numberOfAtoms = atoms.size();
-            molecule.findStartsAndEndsOfCycles();
-            String moleculeName = Nomenclature.getName(molecule);
+        boolean isConnected = checkConnectivity(atoms);
+        if (!isConnected)
+            throw new DisconnectedAtomsException();
 
-            nameDisplayArea.setText("Nazev molekuly: " + moleculeName);
+        return Nomenclature.getName(molecule);
+    }
 
-            mainPanel.repaint();
-        } catch (Molecule.InvalidLigandConfigurationException | EmptyMoleculeException | DisconnectedAtomsException e) {
+    /**
+     * Zobrazi vysledek pojmenovani. Chyba pojmenovani, ktere si uzivatel vyzadal, se zobrazi v dialogu, u prubezneho nahledu
+     * jen v miste nazvu, aby kresleni neprerusovala.
+     * @param result Vysledek pojmenovani.
+     */
+    private void showName(BackgroundNaming.Result result) {
+        if (result.error() == null) {
+            nameDisplayArea.setText("Nazev molekuly: " + result.name());
+        } else if (result.requested()) {
             JOptionPane.showMessageDialog(
                     null,
-                    e.getMessage(),
+                    result.error().getMessage(),
                     "Error",
                     JOptionPane.ERROR_MESSAGE
             );
+        } else if (result.error() instanceof EmptyMoleculeException) {
+            nameDisplayArea.setText("");
+        } else {
+            nameDisplayArea.setText("Molekulu zatim nelze pojmenovat: " + result.error().getMessage());
         }
     }
 
+    /**
+     * Nahradi kresbu molekulou, jejiz atomy rozmisti MoleculeLayout. Nahrazeni lze vratit jako kazdou jinou upravu.
+     * @param imported Molekula, napriklad nactena ze SMILES.
+     */
+    public void importMolecule(Molecule imported) {
+        MoleculeLayout layout = new MoleculeLayout(imported);
+        int size = imported.atoms.length;
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, layout.x[i]);
+            minY = Math.min(minY, layout.y[i]);
+        }
+
+        // Pojmenovani kresby zacina poslednim uhlikem, atomy proto pridame od konce, aby start molekuly byl posledni
+        // a kresba dostala stejny nazev jako molekula.
+        AtomPoint[] newPoints = new AtomPoint[size];
+        for (int i = size - 1; i >= 0; i--) {
+            AtomType type = switch (imported.elements[i]) {
+                case 'O' -> AtomType.OXYGEN;
+                case 'N' -> AtomType.NITROGEN;
+                case 'S' -> AtomType.SULFUR;
+                default -> AtomType.CARBON;
+            };
+            Point p = new Point(IMPORT_MARGIN + (int) Math.round((layout.x[i] - minX) * BOND_LENGTH),
+                    IMPORT_MARGIN + (int) Math.round((layout.y[i] - minY) * BOND_LENGTH));
+            newPoints[i] = new AtomPoint(p, type, nextId++);
+            newPoints[i].atom = createAtom(type);
+            newPoints[i].atom.ID = newPoints[i].id;
+        }
+        List<Edge> newEdges = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            for (int bond = imported.bondOffsets[i]; bond < imported.bondOffsets[i + 1]; bond++) {
+                int ligand = imported.bondTargets[bond];
+                if (ligand < i)
+                    continue;
+                try {
+                    newPoints[i].atom.bindAtoms(newPoints[ligand].atom, imported.bondOrders[bond]);
+                } catch (Atom.LigancyExceededException e) {
+                    // Atomy maji stejne ligance jako atomy importovane molekuly.
+                    throw new IllegalStateException(e);
+                }
+                newEdges.add(new Edge(newPoints[i], newPoints[ligand], imported.bondOrders[bond]));
+            }
+        }
+        List<AtomPoint> pointList = new ArrayList<>(size);
+        List<Atom> atomList = new ArrayList<>(size);
+        for (int i = size - 1; i >= 0; i--) {
+            pointList.add(newPoints[i]);
+            atomList.add(newPoints[i].atom);
+        }
+
+        repaintSelection();
+        selectedPoint = null;
+        selectedEdge = null;
+        history.execute(new ReplaceDrawing(pointList, newEdges, atomList));
+        naming.moleculeChanged();
+    }
+
     /**
      * Metoda pro vymazani aktualni molekuly a kreslici plochy
      */
     private void eraseMolecule() {
-        points.clear();
-        edges.clear();
-        atoms.clear();
-        molecule = new Molecule(new Nitrogen());
+        history.execute(new ReplaceDrawing(new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+        naming.cancel();
         nameDisplayArea.setText("");
-        mainPanel.repaint();
     }
 
     /**
@@ -306,12 +435,7 @@ public class DrawGUI {
      * @return Bod
      */
     private AtomPoint findPoint(Point p) {
-        for (AtomPoint point : points) {
-            if (point.getPoint().distance(p) < 10) {
-                return point;
-            }
-        }
-        return null;
+        return index.findPoint(p);
     }
 
     /**
@@ -320,26 +444,7 @@ public class DrawGUI {
      * @return Hranu nebo null.
      */
     private Edge findEdge(Point p) {
-        for (Edge edge : edges) {
-            if (edge.p1 == null || edge.p2 == null) continue;
-            if (isPointOnLine(p, edge.p1.getPoint(), edge.p2.getPoint())) {
-                return edge;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Pomocna funkce pro findEdge(). Zjisti zda bod lezi na dane hrane.
-     * @param p bod
-     * @param p1 jeden konec hrany
-     * @param p2 druhy konec hrany
-     * @return true/ false podle toho zda je ci neni bod na dane hrane
-     */
-    private boolean isPointOnLine(Point p, Point p1, Point p2) {
-        int threshold = 3;
-        double distance = Math.abs((p2.y - p1.y) * p.x - (p2.x - p1.x) * p.y + p2.x * p1.y - p2.y * p1.x) / p1.distance(p2);
-        return distance < threshold;
+        return index.findEdge(p);
     }
 
     /**
@@ -347,7 +452,7 @@ public class DrawGUI {
      * @param point Bod, jez ma byt smazan.
      */
     private void deletePoint(AtomPoint point) {
-        Atom atom = atoms.get(point.id);
+        Atom atom = point.atom;
         for (Atom ligand : atom.ligands) {
             if (ligand != null) {
                 for (int i = 0; i < ligand.ligands.length; i++) {
@@ -358,7 +463,13 @@ public class DrawGUI {
         }
         atoms.remove(atom);
         points.remove(point);
-        edges.removeIf(edge -> Objects.equals(edge.p1,point) || Objects.equals(edge.p2,point));
+        index.removePoint(point);
+        edges.removeIf(edge -> {
+            boolean incident = Objects.equals(edge.p1, point) || Objects.equals(edge.p2, point);
+            if (incident)
+                index.removeEdge(edge);
+            return incident;
+        });
     }
 
     /**
@@ -386,66 +497,512 @@ public class DrawGUI {
         }
     }
 
+    /**
+     * @param type Typ atomu.
+     * @return Novy atom bez ligandu.
+     */
+    private static Atom createAtom(AtomType type) {
+        return switch (type) {
+            case CARBON -> new Carbon();
+            case OXYGEN -> new Oxygen();
+            case NITROGEN -> new Nitrogen();
+            case SULFUR -> new Sulphur();
+        };
+    }
+
     /**
      * Smaze bud vybrany bod nebo hranu.
      */
     private void deleteSelected() {
         if (selectedPoint != null) {
-            deletePoint(selectedPoint);
+            history.execute(new RemoveAtom(selectedPoint));
             selectedPoint = null; // Reset
+            naming.moleculeChanged();
         } else if (selectedEdge != null) {
-            Atom atom1 = atoms.get(selectedEdge.p1.id);
-            Atom atom2 = atoms.get(selectedEdge.p2.id);
+            history.execute(new RemoveBond(selectedEdge));
+            selectedEdge = null; // Reset
+            naming.moleculeChanged();
+        }
+    }
+
+    /**
+     * Prekresli oblast vybraneho bodu nebo hrany. Vola se pred zmenou vyberu i po ni.
+     */
+    private void repaintSelection() {
+        if (selectedPoint != null)
+            drawingPanel.repaint(DrawingPanel.bounds(selectedPoint));
+        if (selectedEdge != null)
+            drawingPanel.repaint(DrawingPanel.bounds(selectedEdge));
+    }
+
+    /**
+     * Odebere ze seznamu posledni vyskyt prvku. Vracene upravy odebiraji naposledy pridane prvky, ktere jsou na konci seznamu.
+     * @param list Seznam.
+     * @param item Odebirany prvek.
+     */
+    private static <T> void removeLast(List<T> list, T item) {
+        for (int i = list.size() - 1; i >= 0; i--) {
+            if (list.get(i) == item) {
+                list.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Najde vazebna mista atomu obsazena danym ligandem.
+     * @param atom Atom.
+     * @param ligand Ligand, null pro volna vazebna mista.
+     * @return Indexy vazebnych mist.
+     */
+    private static int[] findSlots(Atom atom, Atom ligand) {
+        int count = 0;
+        int[] slots = new int[atom.ligands.length];
+        for (int i = 0; i < atom.ligands.length; i++) {
+            if (atom.ligands[i] == ligand)
+                slots[count++] = i;
+        }
+        return Arrays.copyOf(slots, count);
+    }
+
+    /**
+     * Pocty nasobnych vazeb atomu, ktere se pri zmene vazeb upravuji a pri vraceni zmeny obnovuji.
+     */
+    private record MultipleBonds(Atom atom, boolean hasMultipleBond, int numOfDoubleBonds, int numOfTripleBonds) {
+        MultipleBonds(Atom atom) {
+            this(atom, atom.hasMultipleBond, atom.numOfDoubleBonds, atom.numOfTripleBonds);
+        }
+
+        void restore() {
+            atom.hasMultipleBond = hasMultipleBond;
+            atom.numOfDoubleBonds = numOfDoubleBonds;
+            atom.numOfTripleBonds = numOfTripleBonds;
+        }
+    }
+
+    /**
+     * Pridani bodu a jeho atomu.
+     */
+    private class AddAtom implements History.Command {
+        private final AtomPoint point;
+
+        AddAtom(AtomPoint point) {
+            this.point = point;
+        }
+
+        @Override
+        public void apply() {
+            points.add(point);
+            atoms.add(point.atom);
+            index.addPoint(point);
+            drawingPanel.moleculeChanged(DrawingPanel.bounds(point));
+            if (point.atom.symbol == 'C')
+                molecule.start = point.atom;
+        }
+
+        @Override
+        public void revert() {
+            removeLast(points, point);
+            removeLast(atoms, point.atom);
+            index.removePoint(point);
+            drawingPanel.moleculeChanged(DrawingPanel.bounds(point));
+        }
+    }
+
+    /**
+     * Pridani vazby. Vazba obsadi prvni volna vazebna mista obou atomu, ktera se pri vraceni zase uvolni.
+     */
+    private class AddBond implements History.Command {
+        private final Edge edge;
+        private MultipleBonds previous1, previous2;
+        private int[] slots1, slots2;
+
+        AddBond(Edge edge) {
+            this.edge = edge;
+        }
+
+        @Override
+        public void apply() {
+            Atom atom1 = edge.p1.atom;
+            Atom atom2 = edge.p2.atom;
+            previous1 = new MultipleBonds(atom1);
+            previous2 = new MultipleBonds(atom2);
+            slots1 = findSlots(atom1, null);
+            slots2 = findSlots(atom2, null);
+            try {
+                atom1.bindAtoms(atom2, edge.type);
+            } catch (Atom.LigancyExceededException e) {
+                // Volna mista se kontroluji pred vytvorenim upravy.
+                throw new IllegalStateException(e);
+            }
+            edges.add(edge);
+            index.addEdge(edge);
+            drawingPanel.moleculeChanged(DrawingPanel.bounds(edge));
+        }
+
+        @Override
+        public void revert() {
+            for (int i = 0; i < edge.type; i++) {
+                edge.p1.atom.ligands[slots1[i]] = null;
+                edge.p2.atom.ligands[slots2[i]] = null;
+            }
+            previous1.restore();
+            previous2.restore();
+            removeLast(edges, edge);
+            index.removeEdge(edge);
+            drawingPanel.moleculeChanged(DrawingPanel.bounds(edge));
+        }
+    }
+
+    /**
+     * Odebrani vsech vazeb mezi dvema atomy spolu s hranou.
+     */
+    private class RemoveBond implements History.Command {
+        private final Edge edge;
+        private MultipleBonds previous1, previous2;
+        private int[] slots1, slots2;
+        private int edgeIndex;
+
+        RemoveBond(Edge edge) {
+            this.edge = edge;
+        }
+
+        @Override
+        public void apply() {
+            Atom atom1 = edge.p1.atom;
+            Atom atom2 = edge.p2.atom;
+            previous1 = new MultipleBonds(atom1);
+            previous2 = new MultipleBonds(atom2);
+            slots1 = findSlots(atom1, atom2);
+            slots2 = findSlots(atom2, atom1);
             deleteBond(atom1, atom2);
             deleteBond(atom2, atom1);
+            edgeIndex = edges.indexOf(edge);
+            edges.remove(edgeIndex);
+            index.removeEdge(edge);
+            drawingPanel.moleculeChanged(DrawingPanel.bounds(edge));
+        }
 
-            edges.remove(selectedEdge);
-            selectedEdge = null; // Reset
+        @Override
+        public void revert() {
+            for (int slot : slots1)
+                edge.p1.atom.ligands[slot] = edge.p2.atom;
+            for (int slot : slots2)
+                edge.p2.atom.ligands[slot] = edge.p1.atom;
+            previous1.restore();
+            previous2.restore();
+            edges.add(edgeIndex, edge);
+            index.addEdge(edge);
+            drawingPanel.moleculeChanged(DrawingPanel.bounds(edge));
+        }
+    }
+
+    /**
+     * Odebrani bodu spolu s hranami, ktere z nej vedou.
+     */
+    private class RemoveAtom implements History.Command {
+        private final AtomPoint point;
+        private int pointIndex, atomIndex;
+        private final Map<Atom, int[]> ligandSlots = new IdentityHashMap<>(); // Vazebna mista sousedu obsazena atomem
+        private final List<Integer> edgeIndices = new ArrayList<>();
+        private final List<Edge> removedEdges = new ArrayList<>();
+
+        RemoveAtom(AtomPoint point) {
+            this.point = point;
+        }
+
+        @Override
+        public void apply() {
+            Atom atom = point.atom;
+            pointIndex = points.indexOf(point);
+            atomIndex = atoms.indexOf(atom);
+            ligandSlots.clear();
+            for (Atom ligand : atom.ligands) {
+                if (ligand != null && !ligandSlots.containsKey(ligand))
+                    ligandSlots.put(ligand, findSlots(ligand, atom));
+            }
+            edgeIndices.clear();
+            removedEdges.clear();
+            for (int i = 0; i < edges.size(); i++) {
+                Edge edge = edges.get(i);
+                if (Objects.equals(edge.p1, point) || Objects.equals(edge.p2, point)) {
+                    edgeIndices.add(i);
+                    removedEdges.add(edge);
+                }
+            }
+            deletePoint(point);
+            drawingPanel.moleculeChanged(bounds());
+        }
+
+        @Override
+        public void revert() {
+            atoms.add(atomIndex, point.atom);
+            points.add(pointIndex, point);
+            index.addPoint(point);
+            for (Map.Entry<Atom, int[]> entry : ligandSlots.entrySet()) {
+                for (int slot : entry.getValue())
+                    entry.getKey().ligands[slot] = point.atom;
+            }
+            for (int i = 0; i < removedEdges.size(); i++) {
+                edges.add(edgeIndices.get(i), removedEdges.get(i));
+                index.addEdge(removedEdges.get(i));
+            }
+            drawingPanel.moleculeChanged(bounds());
+        }
+
+        /**
+         * @return Oblast bodu a jeho hran.
+         */
+        private Rectangle bounds() {
+            Rectangle bounds = DrawingPanel.bounds(point);
+            for (Edge edge : removedEdges)
+                bounds.add(DrawingPanel.bounds(edge));
+            return bounds;
+        }
+    }
+
+    /**
+     * Nahrazeni cele kresby jinou, pri smazani prazdnou. Atomy se nemeni, staci si zapamatovat puvodni seznamy.
+     */
+    private class ReplaceDrawing implements History.Command {
+        private List<AtomPoint> otherPoints;
+        private List<Edge> otherEdges;
+        private List<Atom> otherAtoms;
+        private SpatialIndex otherIndex;
+        private Molecule otherMolecule;
+
+        /**
+         * @param newPoints Body nove kresby.
+         * @param newEdges Hrany nove kresby.
+         * @param newAtoms Atomy bodu nove kresby ve stejnem poradi.
+         */
+        ReplaceDrawing(List<AtomPoint> newPoints, List<Edge> newEdges, List<Atom> newAtoms) {
+            otherPoints = newPoints;
+            otherEdges = newEdges;
+            otherAtoms = newAtoms;
+            otherIndex = new SpatialIndex(HIT_RADIUS, HIT_TOLERANCE);
+            for (AtomPoint point : newPoints)
+                otherIndex.addPoint(point);
+            for (Edge edge : newEdges)
+                otherIndex.addEdge(edge);
+            otherMolecule = new Molecule(newAtoms.isEmpty() ? new Nitrogen() : newAtoms.get(newAtoms.size() - 1));
+        }
+
+        /**
+         * Vymeni aktualni kresbu s tou, kterou si uprava pamatuje.
+         */
+        private void swap() {
+            List<AtomPoint> previousPoints = points;
+            List<Edge> previousEdges = edges;
+            List<Atom> previousAtoms = atoms;
+            SpatialIndex previousIndex = index;
+            Molecule previousMolecule = molecule;
+            points = otherPoints;
+            edges = otherEdges;
+            atoms = otherAtoms;
+            index = otherIndex;
+            molecule = otherMolecule;
+            otherPoints = previousPoints;
+            otherEdges = previousEdges;
+            otherAtoms = previousAtoms;
+            otherIndex = previousIndex;
+            otherMolecule = previousMolecule;
+            drawingPanel.moleculeChanged(null);
+        }
+
+        @Override
+        public void apply() {
+            swap();
+        }
+
+        @Override
+        public void revert() {
+            swap();
         }
-        mainPanel.repaint();
     }
 
     public JPanel getPanel() {
         return mainPanel;
     }
 
-    private class DrawingPanel extends JPanel {
+    /**
+     * Kreslici plocha. Molekula bez zvyrazneni vyberu se kresli do obrazku v mezipameti, ktery se po uprave kresby
+     * prekresli jen v oblasti zmeny. Pri prekresleni plochy se obrazek jen zkopiruje a vybrany bod nebo hrana se nakresli
+     * zelene pres nej. Obrazek ma rozliseni zarizeni, takze je ostry i pri zvetseni na displejich s vysokym rozlisenim.
+     * Plocha se posouva v posuvnem panelu a roste s kresbou. Obrazek pokryva jen viditelnou cast plochy, takze jeho
+     * velikost nezavisi na velikosti molekuly.
+     */
+    private class DrawingPanel extends JPanel implements Scrollable {
+        private static final int MARGIN = 6; // Nejvetsi presah kresby bodu nebo hrany pres jeji souradnice
+
+        private BufferedImage cache = null; // Nakreslena molekula, null pokud se ma nakreslit cela znovu
+        private Rectangle cacheArea; // Cast plochy, kterou obrazek pokryva
+        private double scaleX, scaleY; // Meritko zarizeni, pro ktere je obrazek nakreslen
+        private final Rectangle extent = new Rectangle(); // Oblast, kterou kresba zabira nebo zabirala
+
+        /**
+         * Oblast, kterou bod zabira na plose.
+         * @param point Bod.
+         * @return Oblast.
+         */
+        static Rectangle bounds(AtomPoint point) {
+            Point p = point.getPoint();
+            return new Rectangle(p.x - MARGIN, p.y - MARGIN, 2 * MARGIN, 2 * MARGIN);
+        }
+
+        /**
+         * Oblast, kterou hrana zabira na plose vcetne rovnobeznych car nasobne vazby.
+         * @param edge Hrana.
+         * @return Oblast.
+         */
+        static Rectangle bounds(Edge edge) {
+            Rectangle bounds = new Rectangle(edge.p1.getPoint());
+            bounds.add(edge.p2.getPoint());
+            bounds.grow(MARGIN, MARGIN);
+            return bounds;
+        }
+
+        /**
+         * Prekresli zmenenou oblast v obrazku molekuly a na plose.
+         * @param dirty Zmenena oblast, null pokud se zmenila cela kresba.
+         */
+        void moleculeChanged(Rectangle dirty) {
+            if (dirty == null) {
+                cache = null;
+                extent.setBounds(0, 0, 0, 0);
+                for (AtomPoint point : points)
+                    extent.add(bounds(point));
+                revalidate();
+                repaint();
+                return;
+            }
+            if (!extent.contains(dirty)) {
+                extent.add(dirty);
+                revalidate();
+            }
+            Rectangle region = cache != null ? dirty.intersection(cacheArea) : null;
+            if (region != null && !region.isEmpty()) {
+                Graphics2D g = cache.createGraphics();
+                g.scale(scaleX, scaleY);
+                g.translate(-cacheArea.x, -cacheArea.y);
+                g.clip(region);
+                g.setComposite(AlphaComposite.Clear);
+                g.fill(region);
+                g.setComposite(AlphaComposite.SrcOver);
+                drawMolecule(g, region);
+                g.dispose();
+            }
+            repaint(dirty);
+        }
+
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
 
-            // Namaluje hrany
-            for (Edge edge : edges) {
-                if (edge == null || edge.p1 == null || edge.p2 == null) continue;
-
-                if (edge.equals(selectedEdge)) {
-                    g.setColor(Color.GREEN); // Zvyrazni zelene vybranou hranu.
-                } else {
-                    g.setColor(Color.BLACK);
-                }
+            AffineTransform transform = ((Graphics2D) g).getTransform();
+            Rectangle visible = getVisibleRect();
+            if (cache == null || scaleX != transform.getScaleX() || scaleY != transform.getScaleY() || !visible.equals(cacheArea))
+                renderCache(visible, transform.getScaleX(), transform.getScaleY());
+            g.drawImage(cache, visible.x, visible.y, visible.width, visible.height, null);
 
-                if (edge.type == 1) {
-                    g.drawLine(edge.p1.getPoint().x, edge.p1.getPoint().y, edge.p2.getPoint().x, edge.p2.getPoint().y);
-                } else if (edge.type == 2) {
-                    drawDoubleEdge(g, edge.p1.getPoint(), edge.p2.getPoint());
-                } else if (edge.type == 3) {
-                    drawTripleEdge(g, edge.p1.getPoint(), edge.p2.getPoint());
-                }
+            // Zvyrazni zelene vybranou hranu a bod.
+            if (selectedEdge != null) {
+                drawEdge(g, selectedEdge, Color.GREEN);
+                // Koncove body zustanou nad hranou jako v obrazku molekuly.
+                drawPoint(g, selectedEdge.p1, selectedEdge.p1.getColor());
+                drawPoint(g, selectedEdge.p2, selectedEdge.p2.getColor());
             }
+            if (selectedPoint != null)
+                drawPoint(g, selectedPoint, Color.GREEN);
+        }
+
+        /**
+         * Nakresli viditelnou cast molekuly do noveho obrazku.
+         * @param area Viditelna cast plochy.
+         * @param scaleX Vodorovne meritko zarizeni.
+         * @param scaleY Svisle meritko zarizeni.
+         */
+        private void renderCache(Rectangle area, double scaleX, double scaleY) {
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+            cacheArea = area;
+            cache = new BufferedImage(Math.max(1, (int) Math.ceil(area.width * scaleX)),
+                    Math.max(1, (int) Math.ceil(area.height * scaleY)), BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = cache.createGraphics();
+            g.scale(scaleX, scaleY);
+            g.translate(-area.x, -area.y);
+            drawMolecule(g, area);
+            g.dispose();
+        }
+
+        /**
+         * Nakresli body a hrany, jejichz kresba zasahuje do oblasti.
+         * @param g Grafika s orezem na oblast.
+         * @param region Oblast.
+         */
+        private void drawMolecule(Graphics g, Rectangle region) {
+            Rectangle area = new Rectangle(region);
+            area.grow(MARGIN, MARGIN); // Body a hrany, jejichz kresba do oblasti zasahuje
+
+            // Namaluje hrany
+            for (Edge edge : index.edgesNear(area))
+                drawEdge(g, edge, Color.BLACK);
 
             // Namaluje body
-            for (AtomPoint atomPoint : points) {
-                if (atomPoint.equals(selectedPoint)) {
-                    g.setColor(Color.GREEN); // Zvyrazni zelene vybrany bod.
-                } else {
-                    g.setColor(atomPoint.getColor());
-                }
+            for (AtomPoint atomPoint : index.pointsNear(area))
+                drawPoint(g, atomPoint, atomPoint.getColor());
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            return new Dimension(extent.x + extent.width + MARGIN, extent.y + extent.height + MARGIN);
+        }
 
-                Point point = atomPoint.getPoint();
-                g.fillOval(point.x - 5, point.y - 5, 10, 10);
+        @Override
+        public Dimension getPreferredScrollableViewportSize() {
+            return getPreferredSize();
+        }
+
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return SpatialIndex.CELL_SIZE;
+        }
+
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.HORIZONTAL ? visibleRect.width : visibleRect.height;
+        }
+
+        // Mensi kresba vyplni cely posuvny panel, aby se dalo kreslit kamkoli.
+        @Override
+        public boolean getScrollableTracksViewportWidth() {
+            return getParent() instanceof JViewport && getParent().getWidth() > getPreferredSize().width;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportHeight() {
+            return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+        }
+
+        private void drawEdge(Graphics g, Edge edge, Color color) {
+            if (edge == null || edge.p1 == null || edge.p2 == null) return;
+
+            g.setColor(color);
+            if (edge.type == 1) {
+                g.drawLine(edge.p1.getPoint().x, edge.p1.getPoint().y, edge.p2.getPoint().x, edge.p2.getPoint().y);
+            } else if (edge.type == 2) {
+                drawDoubleEdge(g, edge.p1.getPoint(), edge.p2.getPoint());
+            } else if (edge.type == 3) {
+                drawTripleEdge(g, edge.p1.getPoint(), edge.p2.getPoint());
             }
         }
 
+        private void drawPoint(Graphics g, AtomPoint atomPoint, Color color) {
+            g.setColor(color);
+            Point point = atomPoint.getPoint();
+            g.fillOval(point.x - 5, point.y - 5, 10, 10);
+        }
+
         private void drawDoubleEdge(Graphics g, Point p1, Point p2) {
             int offset = 3;
             g.drawLine(p1.x - offset, p1.y - offset, p2.x - offset, p2.y - offset);
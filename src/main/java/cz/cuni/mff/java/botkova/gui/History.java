@@ -0,0 +1,95 @@
+package cz.cuni.mff.java.botkova.gui;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Historie uprav kresby pro akce zpet a znovu. Misto kopii cele kresby se ukladaji jen jednotlive upravy, ktere si pamatuji,
+ * co zmenily, takze ulozeni upravy nezavisi na velikosti molekuly. Pokud je uprav vice nez nastavena hloubka, nejstarsi
+ * se zapomenou.
+ */
+class History {
+    /**
+     * Uprava kresby, kterou lze vratit a znovu provest. Vraceni predpoklada, ze kresba je ve stavu po provedeni upravy.
+     */
+    interface Command {
+        /**
+         * Provede upravu.
+         */
+        void apply();
+
+        /**
+         * Vrati kresbu do stavu pred upravou.
+         */
+        void revert();
+    }
+
+    private final int maxDepth;
+    private final Deque<Command> undoStack = new ArrayDeque<>();
+    private final Deque<Command> redoStack = new ArrayDeque<>();
+
+    /**
+     * @param maxDepth Nejvetsi pocet uprav, ktere lze vratit.
+     */
+    History(int maxDepth) {
+        if (maxDepth < 1)
+            throw new IllegalArgumentException("Hloubka historie musi byt kladna.");
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Provede upravu a zaznamena ji. Vracene upravy uz nelze znovu provest.
+     * @param command Uprava.
+     */
+    void execute(Command command) {
+        command.apply();
+        redoStack.clear();
+        push(command);
+    }
+
+    /**
+     * Vrati posledni upravu.
+     * @return False, pokud neni co vratit.
+     */
+    boolean undo() {
+        Command command = undoStack.pollLast();
+        if (command == null)
+            return false;
+        command.revert();
+        redoStack.addLast(command);
+        return true;
+    }
+
+    /**
+     * Znovu provede posledni vracenou upravu.
+     * @return False, pokud neni co znovu provest.
+     */
+    boolean redo() {
+        Command command = redoStack.pollLast();
+        if (command == null)
+            return false;
+        command.apply();
+        push(command);
+        return true;
+    }
+
+    /**
+     * @return Pocet uprav, ktere lze vratit.
+     */
+    int getUndoDepth() {
+        return undoStack.size();
+    }
+
+    /**
+     * @return Pocet uprav, ktere lze znovu provest.
+     */
+    int getRedoDepth() {
+        return redoStack.size();
+    }
+
+    private void push(Command command) {
+        undoStack.addLast(command);
+        if (undoStack.size() > maxDepth)
+            undoStack.removeFirst();
+    }
+}
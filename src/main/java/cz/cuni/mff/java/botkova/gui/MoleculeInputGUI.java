@@ -4,6 +4,7 @@ import cz.cuni.mff.java.botkova.nomenclature.Molecule;
 import cz.cuni.mff.java.botkova.nomenclature.Nitrogen;
 
 import javax.swing.*;
+import java.util.function.Consumer;
 
 /**
  * Trida pro uvodni stranku GUI nechavajici uzivatele rozhodnout, zda chce molekulu zadat textove ve SMILES formatu, nebo ji nakreslit.
@@ -16,8 +17,13 @@ public class MoleculeInputGUI extends JFrame{
         setLocationRelativeTo(null);
 
         JTabbedPane tabbedPane = new JTabbedPane();
-        JPanel smilesPanel = createSmilesPanel();
-        JPanel drawPanel = createDrawPanel();
+        DrawGUI drawGui = createDrawGui();
+        JPanel drawPanel = drawGui.getPanel();
+        // Molekula ze SMILES se nakresli na druhe zalozce, kde ji lze upravit.
+        JPanel smilesPanel = createSmilesPanel(molecule -> {
+            drawGui.importMolecule(molecule);
+            tabbedPane.setSelectedComponent(drawPanel);
+        });
 
         tabbedPane.addTab("SMILES", smilesPanel);
         tabbedPane.addTab("Nakreslit molekulu", drawPanel);
@@ -26,21 +32,21 @@ public class MoleculeInputGUI extends JFrame{
 
     /**
      * Vytvori SMILES panel.
+     * @param onDraw Nakresleni zadane molekuly.
      * @return SMILES panel
      */
-    private JPanel createSmilesPanel() {
-        SmilesGUI smilesGui = new SmilesGUI();
+    private JPanel createSmilesPanel(Consumer<Molecule> onDraw) {
+        SmilesGUI smilesGui = new SmilesGUI(onDraw);
         return smilesGui.getPanel();
     }
 
     /**
-     * Vytvori panel pro kresleni.
-     * @return panel pro kresleni
+     * Vytvori kresleni molekuly.
+     * @return kresleni molekuly
      */
-    private JPanel createDrawPanel() {
+    private DrawGUI createDrawGui() {
         Molecule molecule = new Molecule(new Nitrogen());
-        DrawGUI drawGui = new DrawGUI(molecule);
-        return drawGui.getPanel();
+        return new DrawGUI(molecule);
     }
 
     /**
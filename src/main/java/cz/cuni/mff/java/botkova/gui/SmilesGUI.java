@@ -1,9 +1,12 @@
 package cz.cuni.mff.java.botkova.gui;
 
+import cz.cuni.mff.java.botkova.nomenclature.Molecule;
 import cz.cuni.mff.java.botkova.nomenclature.Nomenclature;
+import cz.cuni.mff.java.botkova.nomenclature.SMILESParser;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.function.Consumer;
 
 /**
  * Trida pro zadani molekuly ve SMILES formatu.
@@ -14,6 +17,13 @@ public class SmilesGUI {
     private final JPanel mainPanel;
 
     public SmilesGUI() {
+        this(null);
+    }
+
+    /**
+     * @param onDraw Zpracovani molekuly, kterou chce uzivatel nakreslit, nebo null, pokud kresleni neni k dispozici.
+     */
+    public SmilesGUI(Consumer<Molecule> onDraw) {
         mainPanel = new JPanel(new BorderLayout());
         mainPanel.setPreferredSize(new Dimension(400, 150));
 
@@ -26,7 +36,24 @@ public class SmilesGUI {
         inputPanel.setLayout(new BorderLayout());
         inputPanel.add(new JLabel("Zadejte molekulu ve SMILES formatu:"), BorderLayout.NORTH);
         inputPanel.add(inputField, BorderLayout.CENTER);
-        inputPanel.add(submitButton, BorderLayout.EAST);
+        if (onDraw != null) {
+            JPanel buttonPanel = new JPanel(new GridLayout(1, 2));
+            JButton drawButton = new JButton("Nakreslit");
+            buttonPanel.add(submitButton);
+            buttonPanel.add(drawButton);
+            inputPanel.add(buttonPanel, BorderLayout.EAST);
+
+            drawButton.addActionListener(e -> {
+                try {
+                    onDraw.accept(SMILESParser.parseMolecule(inputField.getText()));
+                    resultArea.setText("");
+                } catch (Exception ex) {
+                    resultArea.setText("Chyba: " + ex.getMessage());
+                }
+            });
+        } else {
+            inputPanel.add(submitButton, BorderLayout.EAST);
+        }
 
         inputPanel.add(new JPanel(), BorderLayout.SOUTH);
         mainPanel.add(inputPanel, BorderLayout.NORTH);
@@ -0,0 +1,175 @@
+package cz.cuni.mff.java.botkova.gui;
+
+import java.awt.*;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rovnomerna mrizka nad nakreslenymi body a hranami pro hledani bodu nebo hrany pod mysi. Kazda bunka si pamatuje body,
+ * ktere v ni lezi, a hrany, ktere ji protinaji vcetne okoli sirokeho jako tolerance kliknuti. Pri hledani se tak prochazi
+ * jen bunky kolem kliknuti a doba hledani nezavisi na velikosti kresby. Stejne se hledaji body a hrany, ktere je treba
+ * prekreslit v oblasti zmenene upravou kresby.
+ */
+class SpatialIndex {
+    static final int CELL_SIZE = 20; // Velikost bunky v pixelech, alespon dvojnasobek polomeru bodu
+
+    private final double pointRadius;
+    private final double edgeTolerance;
+    private final Map<Long, List<AtomPoint>> pointCells = new HashMap<>();
+    private final Map<Long, List<Edge>> edgeCells = new HashMap<>();
+
+    /**
+     * @param pointRadius Nejvetsi vzdalenost kliknuti od stredu bodu.
+     * @param edgeTolerance Nejvetsi vzdalenost kliknuti od hrany.
+     */
+    SpatialIndex(double pointRadius, double edgeTolerance) {
+        this.pointRadius = pointRadius;
+        this.edgeTolerance = edgeTolerance;
+    }
+
+    void addPoint(AtomPoint point) {
+        Point p = point.getPoint();
+        pointCells.computeIfAbsent(key(cell(p.x), cell(p.y)), k -> new ArrayList<>()).add(point);
+    }
+
+    void removePoint(AtomPoint point) {
+        Point p = point.getPoint();
+        remove(pointCells, key(cell(p.x), cell(p.y)), point);
+    }
+
+    void addEdge(Edge edge) {
+        for (long key : edgeCells(edge))
+            edgeCells.computeIfAbsent(key, k -> new ArrayList<>()).add(edge);
+    }
+
+    void removeEdge(Edge edge) {
+        for (long key : edgeCells(edge))
+            remove(edgeCells, key, edge);
+    }
+
+    /**
+     * Najde bod, jehoz stred je od kliknuti blize nez polomer bodu. Pri prekryvu vyhraje drive nakresleny bod.
+     * @param p Souradnice kliknuti.
+     * @return Bod nebo null.
+     */
+    AtomPoint findPoint(Point p) {
+        AtomPoint found = null;
+        for (int x = cell(p.x - pointRadius); x <= cell(p.x + pointRadius); x++) {
+            for (int y = cell(p.y - pointRadius); y <= cell(p.y + pointRadius); y++) {
+                List<AtomPoint> cell = pointCells.get(key(x, y));
+                if (cell == null)
+                    continue;
+                for (AtomPoint point : cell) {
+                    if (point.getPoint().distance(p) < pointRadius && (found == null || point.id < found.id))
+                        found = point;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Najde hranu, ktera je od kliknuti blize nez tolerance. Pri prekryvu vyhraje nejblizsi hrana.
+     * @param p Souradnice kliknuti.
+     * @return Hrana nebo null.
+     */
+    Edge findEdge(Point p) {
+        List<Edge> cell = edgeCells.get(key(cell(p.x), cell(p.y)));
+        if (cell == null)
+            return null;
+        Edge found = null;
+        double foundDistance = edgeTolerance;
+        for (Edge edge : cell) {
+            Point p1 = edge.p1.getPoint();
+            Point p2 = edge.p2.getPoint();
+            double distance = Line2D.ptSegDist(p1.x, p1.y, p2.x, p2.y, p.x, p.y);
+            if (distance < foundDistance) {
+                found = edge;
+                foundDistance = distance;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Body, jejichz stred lezi v bunkach pokryvajicich oblast. Vraci i nektere body mimo oblast.
+     * @param area Oblast.
+     * @return Body.
+     */
+    List<AtomPoint> pointsNear(Rectangle area) {
+        List<AtomPoint> found = new ArrayList<>();
+        for (int x = cell(area.x); x <= cell(area.x + area.width); x++) {
+            for (int y = cell(area.y); y <= cell(area.y + area.height); y++) {
+                List<AtomPoint> cell = pointCells.get(key(x, y));
+                if (cell != null)
+                    found.addAll(cell);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Hrany, ktere protinaji bunky pokryvajici oblast. Obsahuje vsechny hrany, ktere oblast protinaji, a nektere dalsi.
+     * @param area Oblast.
+     * @return Hrany bez opakovani.
+     */
+    Set<Edge> edgesNear(Rectangle area) {
+        Set<Edge> found = new LinkedHashSet<>();
+        for (int x = cell(area.x); x <= cell(area.x + area.width); x++) {
+            for (int y = cell(area.y); y <= cell(area.y + area.height); y++) {
+                List<Edge> cell = edgeCells.get(key(x, y));
+                if (cell != null)
+                    found.addAll(cell);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Bunky, ktere hrana rozsirena o toleranci protina. Prochazi se jen obdelnik ohranicujici hranu.
+     * @param edge Hrana.
+     * @return Klice bunek.
+     */
+    private List<Long> edgeCells(Edge edge) {
+        Point p1 = edge.p1.getPoint();
+        Point p2 = edge.p2.getPoint();
+        List<Long> keys = new ArrayList<>();
+        for (int x = cell(Math.min(p1.x, p2.x) - edgeTolerance); x <= cell(Math.max(p1.x, p2.x) + edgeTolerance); x++) {
+            for (int y = cell(Math.min(p1.y, p2.y) - edgeTolerance); y <= cell(Math.max(p1.y, p2.y) + edgeTolerance); y++) {
+                Rectangle2D area = new Rectangle2D.Double(x * CELL_SIZE - edgeTolerance, y * CELL_SIZE - edgeTolerance,
+                        CELL_SIZE + 2 * edgeTolerance, CELL_SIZE + 2 * edgeTolerance);
+                if (area.intersectsLine(p1.x, p1.y, p2.x, p2.y))
+                    keys.add(key(x, y));
+            }
+        }
+        return keys;
+    }
+
+    private static <T> void remove(Map<Long, List<T>> cells, long key, T item) {
+        List<T> cell = cells.get(key);
+        if (cell == null)
+            return;
+        for (int i = 0; i < cell.size(); i++) {
+            if (cell.get(i) == item) {
+                cell.remove(i);
+                break;
+            }
+        }
+        if (cell.isEmpty())
+            cells.remove(key);
+    }
+
+    private static int cell(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+}
@@ -1,9 +1,5 @@
 package cz.cuni.mff.java.botkova.nomenclature;
 
-import java.util.HashMap;
-import java.util.Objects;
-import java.util.stream.Stream;
-
 /**
  * Trida slouzici jako sablona pro konkretni implementace atomu, ktere tvori molekulu.
  */
@@ -11,9 +7,6 @@ public class Atom {
     public int ID;
     public char symbol;
     public Atom[] ligands;
-    public HashMap<String, Integer> numOfSeniorGroupsMap = new HashMap<>(); // Mapa pro uchovani poctu senior skupin pripojenych k tomuto atomu
-    public int numOfSeniorGroups = 0; // Celkovy pocet senior skupin pripojenych k tomuto atomu
-    public boolean isPartOfCycle = false;
     public boolean hasMultipleBond = false;
     public int numOfDoubleBonds = 0;
     public int numOfTripleBonds = 0;
@@ -30,21 +23,11 @@ public class Atom {
         for (int i = 0; i < atom.ligands.length; i++) {
             ligands[i] = null;
         }
-        for (String seniorGroup : atom.numOfSeniorGroupsMap.keySet())
-            this.numOfSeniorGroupsMap.put(seniorGroup, atom.numOfSeniorGroupsMap.get(seniorGroup));
-        this.numOfSeniorGroups = atom.numOfSeniorGroups;
-        this.isPartOfCycle = atom.isPartOfCycle;
         this.hasMultipleBond = atom.hasMultipleBond;
         this.numOfDoubleBonds = atom.numOfDoubleBonds;
         this.numOfTripleBonds = atom.numOfTripleBonds;
     }
 
-    public void reset() {
-        numOfSeniorGroupsMap = new HashMap<>();
-        numOfSeniorGroups = 0;
-        isPartOfCycle = false;
-    }
-
     /**
      * Vazani tohoto atomu s jinym atomem pomoci urcite nasobnosti vazby
      * @param atom Atom, ktery vazeme.
@@ -93,7 +76,12 @@ public class Atom {
      * @return Pocet navazanych vodiku.
      */
     public int countHydrogens() {
-        return (int) Stream.of(ligands).filter(Objects::isNull).count();
+        int count = 0;
+        for (Atom ligand : ligands) {
+            if (ligand == null)
+                count++;
+        }
+        return count;
     }
 
     /**
@@ -102,19 +90,12 @@ public class Atom {
      * @return Pocet navazanych atomu.
      */
     public int countAtoms(char atomSymbol) {
-        return (int) Stream.of(ligands)
-                .filter(ligand -> ligand != null && ligand.symbol == atomSymbol)
-                .count();
-    }
-
-    /**
-     * Zvysi pocet dane fs.
-     * @param key Dana fs.
-     * @param incrementBy O kolik zvetsime pocet fs.
-     */
-    public void incrementNumOfSeniorGroup(String key, int incrementBy) {
-        numOfSeniorGroupsMap.merge(key, incrementBy, Integer::sum);
-        numOfSeniorGroups += incrementBy;
+        int count = 0;
+        for (Atom ligand : ligands) {
+            if (ligand != null && ligand.symbol == atomSymbol)
+                count++;
+        }
+        return count;
     }
 
     @Override
@@ -122,14 +103,6 @@ public class Atom {
         return symbol + "-" + ID;
     }
 
-    /**
-     * Zjisti, zda ma atom nejakou fs.
-     * @return True, pokud ma fs, false, pokud ne.
-     */
-    public boolean hasSeniorGroup() {
-        return !(numOfSeniorGroupsMap.isEmpty());
-    }
-
     public static class LigancyExceededException extends Exception {
         public LigancyExceededException() {
             super("Ligance prekrocena.");
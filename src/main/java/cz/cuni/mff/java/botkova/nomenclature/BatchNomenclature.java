@@ -0,0 +1,206 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Trida pro pojmenovani velkeho mnozstvi molekul zadanych ve SMILES formatu. Molekuly se pojmenovavaji paralelne na vlastnim
+ * fondu vlaken, pricemz soubezne se zpracovava nejvyse dany pocet molekul. Dalsi molekula se ze vstupu nacte az ve chvili, kdy si
+ * volajici vyzvedne nektery vysledek.
+ */
+public class BatchNomenclature implements AutoCloseable {
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final boolean ordered;
+    private final NameCache cache;
+
+    /**
+     * Vytvori davkove pojmenovani s poctem vlaken podle poctu procesoru, ktere vraci vysledky v poradi vstupu.
+     */
+    public BatchNomenclature() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Vytvori davkove pojmenovani, ktere vraci vysledky v poradi vstupu.
+     * @param threads Pocet vlaken, ktera pojmenovavaji molekuly.
+     */
+    public BatchNomenclature(int threads) {
+        this(threads, 4 * threads, true);
+    }
+
+    /**
+     * @param threads Pocet vlaken, ktera pojmenovavaji molekuly.
+     * @param maxInFlight Maximalni pocet molekul, ktere jsou nactene ze vstupu, ale jejich vysledek si volajici jeste nevyzvedl.
+     * @param ordered True, pokud maji vysledky zachovat poradi vstupu. False, pokud se maji vracet v poradi dokonceni.
+     */
+    public BatchNomenclature(int threads, int maxInFlight, boolean ordered) {
+        this(threads, maxInFlight, ordered, null);
+    }
+
+    /**
+     * @param threads Pocet vlaken, ktera pojmenovavaji molekuly.
+     * @param maxInFlight Maximalni pocet molekul, ktere jsou nactene ze vstupu, ale jejich vysledek si volajici jeste nevyzvedl.
+     * @param ordered True, pokud maji vysledky zachovat poradi vstupu. False, pokud se maji vracet v poradi dokonceni.
+     * @param cache Vyrovnavaci pamet nazvu sdilena vlakny, nebo null, pokud se ma kazda molekula pojmenovat znovu.
+     */
+    public BatchNomenclature(int threads, int maxInFlight, boolean ordered, NameCache cache) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Pocet vlaken musi byt kladny.");
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("Pocet soubezne zpracovavanych molekul musi byt kladny.");
+        this.maxInFlight = maxInFlight;
+        this.ordered = ordered;
+        this.cache = cache;
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "nomenclature-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Vysledek pojmenovani jedne molekuly.
+     * @param smiles Vstupni SMILES retezec.
+     * @param name Nazev molekuly, nebo null, pokud pojmenovani selhalo.
+     * @param error Vyjimka, ktera pojmenovani prerusila, nebo null, pokud se molekulu podarilo pojmenovat.
+     * @param nanos Doba nacteni a pojmenovani molekuly v nanosekundach, nebo 0, pokud nebyla merena.
+     */
+    public record Result(String smiles, String name, Exception error, long nanos) {
+        /**
+         * Vysledek bez zmerene doby zpracovani.
+         * @param smiles Vstupni SMILES retezec.
+         * @param name Nazev molekuly, nebo null, pokud pojmenovani selhalo.
+         * @param error Vyjimka, ktera pojmenovani prerusila, nebo null, pokud se molekulu podarilo pojmenovat.
+         */
+        public Result(String smiles, String name, Exception error) {
+            this(smiles, name, error, 0);
+        }
+
+        /**
+         * @return True, pokud se molekulu podarilo pojmenovat.
+         */
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Pojmenuje molekuly ze vstupu. Vstup se cte postupne, jak si volajici vyzvedava vysledky.
+     * @param smiles SMILES retezce.
+     * @return Iterator vysledku.
+     */
+    public Iterator<Result> getNames(Iterator<String> smiles) {
+        return new ResultIterator(smiles);
+    }
+
+    /**
+     * Pojmenuje molekuly ze vstupniho proudu. Vysledny proud je sekvencni, paralelismus zajistuje fond vlaken teto tridy.
+     * Zavrenim vysledneho proudu se zavre i vstupni proud.
+     * @param smiles Proud SMILES retezcu.
+     * @return Proud vysledku.
+     */
+    public Stream<Result> getNames(Stream<String> smiles) {
+        int characteristics = Spliterator.NONNULL | (ordered ? Spliterator.ORDERED : 0);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(getNames(smiles.iterator()), characteristics), false)
+                .onClose(smiles::close);
+    }
+
+    /**
+     * Pojmenuje jednu molekulu. Chyby se nevyhazuji, ale vraci se ve vysledku.
+     * @param smiles SMILES retezec.
+     * @return Vysledek pojmenovani.
+     */
+    private Result getName(String smiles) {
+        long start = System.nanoTime();
+        try {
+            String name = cache != null ? cache.getName(smiles) : Nomenclature.getName(smiles);
+            return new Result(smiles, name, null, System.nanoTime() - start);
+        } catch (Exception e) {
+            return new Result(smiles, null, e, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Ukonci vlakna. Rozpracovane molekuly se jeste dokonci.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Iterator, ktery udrzuje rozpracovany nejvyse dany pocet molekul.
+     */
+    private class ResultIterator implements Iterator<Result> {
+        private final Iterator<String> input;
+        // Pri zachovani poradi cekame vzdy na nejstarsi molekulu, jinak na kteroukoliv dokoncenou.
+        private final Queue<Future<Result>> inFlight = new ArrayDeque<>();
+        private final CompletionService<Result> completed = new ExecutorCompletionService<>(executor);
+        private int pending = 0;
+
+        ResultIterator(Iterator<String> input) {
+            this.input = input;
+        }
+
+        /**
+         * Doplni rozpracovane molekuly ze vstupu az do povoleneho poctu.
+         */
+        private void fill() {
+            while (pending < maxInFlight && input.hasNext()) {
+                String smiles = input.next();
+                if (ordered)
+                    inFlight.add(executor.submit(() -> getName(smiles)));
+                else
+                    completed.submit(() -> getName(smiles));
+                pending++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            fill();
+            return pending > 0;
+        }
+
+        @Override
+        public Result next() {
+            fill();
+            if (pending == 0)
+                throw new NoSuchElementException();
+            // Budouci vysledek se odebere az po jeho vyzvednuti, aby se pri preruseni volajiciho neztratil.
+            // Z CompletionService se odebira jen dokonceny vysledek, jehoz vyzvednuti uz cekat nemusi.
+            Future<Result> future;
+            try {
+                future = ordered ? inFlight.element() : completed.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            try {
+                Result result = future.get();
+                consume();
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                consume();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        /**
+         * Odebere vyzvednuty vysledek z rozpracovanych molekul.
+         */
+        private void consume() {
+            if (ordered)
+                inFlight.remove();
+            pending--;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package cz.cuni.mff.java.botkova.nomenclature;
 
 import java.util.*;
-import java.util.stream.Stream;
 
 /**
  * Trida predstavujici retezec uhliku v molekule.
@@ -13,79 +12,318 @@ public class Chain {
     boolean isCycle = false;
     // Seznam atomu v retezci.
     List<Atom> atoms;
+    // Molekula, ve ktere retezec hledame.
+    Molecule molecule;
+    // Atomy s nejvyssi funkcni skupinou, ktere jeste nejsou v zadne nalezene ceste, nebo null, pokud molekula funkcni skupiny nema.
+    private Starts atomsWithMostSeniorGroup;
+    // Ohodnoceni nejlepsi dosud nalezene uplne linearni a cyklicke cesty podle Filter.getScores, null, pokud zadna nebyla nalezena.
+    private int[] bestCompletePathScores;
+    private int[] bestCyclePathScores;
+    // Pomocna pole prohledavani do sirky, ktera se pouzivaji znovu pro vsechny zacatky. Vzdalenosti dosazenych atomu se po
+    // kazdem prohledavani vrati na -1, dosazene atomy jsou v queue[0..queueLength).
+    private int[] queue;
+    private int queueLength;
+    private int[] distances;
+
+    private static volatile boolean pruning = true;
 
     public Chain(Molecule molecule) {
         atoms = getPath(molecule);
     }
 
+    /**
+     * Retezec bez vybrane cesty. Slouzi k samostatnemu mereni generovani kandidatnich cest a jejich filtrovani.
+     */
+    Chain() {
+    }
+
+    /**
+     * Zacatky prohledavani v poradi, v jakem se zpracovavaji. Atom se muze opakovat, napriklad atom s nekolika skupinami -OH.
+     * Odebrani atomu odebere jeho prvni dosud neodebrany vyskyt, stejne jako List.remove, ale v konstantnim case: kazdy
+     * vyskyt odkazuje na dalsi vyskyt stejneho atomu a odebrane pozice jsou oznacene v BitSetu.
+     */
+    private static class Starts {
+        private final int[] atoms;
+        // Pozice dalsiho vyskytu stejneho atomu, -1 pro posledni vyskyt.
+        private final int[] nextOccurrence;
+        // Pozice prvniho neodebraneho vyskytu pro kazdy atom molekuly, -1, pokud zadny neni.
+        private final int[] firstOccurrence;
+        private final BitSet removed;
+        private int first = 0;
+
+        /**
+         * @param molecule Molekula.
+         * @param atoms Zacatky prohledavani.
+         */
+        Starts(Molecule molecule, List<Atom> atoms) {
+            this.atoms = new int[atoms.size()];
+            nextOccurrence = new int[atoms.size()];
+            firstOccurrence = new int[molecule.atoms.length];
+            Arrays.fill(firstOccurrence, -1);
+            removed = new BitSet(atoms.size());
+            for (int position = atoms.size() - 1; position >= 0; position--) {
+                int atom = molecule.indexOf(atoms.get(position));
+                this.atoms[position] = atom;
+                nextOccurrence[position] = firstOccurrence[atom];
+                firstOccurrence[atom] = position;
+            }
+        }
+
+        boolean isEmpty() {
+            first = removed.nextClearBit(first);
+            return first >= atoms.length;
+        }
+
+        /**
+         * @return Index prvniho neodebraneho atomu.
+         */
+        int getFirst() {
+            first = removed.nextClearBit(first);
+            return atoms[first];
+        }
+
+        /**
+         * Odebere prvni vyskyt atomu, pokud nejaky zbyva.
+         * @param atom Index atomu.
+         */
+        void remove(int atom) {
+            int position = firstOccurrence[atom];
+            if (position != -1) {
+                removed.set(position);
+                firstOccurrence[atom] = nextOccurrence[position];
+            }
+        }
+    }
+
+    /**
+     * @return True, pokud se kandidatni cesty, ktere filtr nemuze vybrat, zahazuji uz pri generovani.
+     */
+    public static boolean isPruning() {
+        return pruning;
+    }
+
+    /**
+     * Nastavi, zda se kandidatni cesty, ktere filtr nemuze vybrat, zahazuji uz pri generovani. Vysledny retezec je v obou
+     * pripadech stejny, vypnuti slouzi k porovnani. Plati pro vsechna nasledna hledani retezce.
+     * @param pruning True pro zahazovani cest.
+     */
+    public static void setPruning(boolean pruning) {
+        Chain.pruning = pruning;
+    }
+
+    /**
+     * Vybere z kandidatnich cest hlavni retezec.
+     * @param molecule Zpracovavana molekula.
+     * @return Cestu hlavniho retezce.
+     */
+    @SuppressWarnings("try")
+    private List<Atom> getPath(Molecule molecule) {
+        this.molecule = molecule;
+        if (isSaturatedHydrocarbonTree()) {
+            try (StageTimer timer = StageTimer.start(Metrics.Stage.LONGEST_PATH_IN_TREE, molecule.atoms.length)) {
+                return getLongestPathInTree();
+            }
+        }
+        Filter filter;
+        try (StageTimer timer = StageTimer.start(Metrics.Stage.CANDIDATE_PATHS, molecule.atoms.length)) {
+            filter = getCandidatePaths(molecule);
+        }
+        // Pro pripad, ze molekula obsahuje pouze 1 uhlik.
+        if (filter == null) {
+            List<Atom> methan = new ArrayList<>();
+            methan.add(molecule.start);
+            return methan;
+        }
+        return filter.filter();
+    }
+
+    /**
+     * Zjisti, zda je molekula strom z uhliku bez funkcnich skupin, cyklu a nasobnych vazeb. Pro takovou molekulu maji vsechny
+     * cesty nulove pocty ve vsech kriteriich krome delky, takze hlavni retezec je nejdelsi cesta.
+     * @return True, pokud molekula takovym stromem je.
+     */
+    private boolean isSaturatedHydrocarbonTree() {
+        if (molecule.mostSeniorGroup != null || !molecule.startsOfTheLongestCycles.isEmpty() || !molecule.atomsWithMultipleBonds.isEmpty())
+            return false;
+        int size = molecule.atoms.length;
+        // Souvisly graf s n vrcholy je strom, pokud ma n-1 hran.
+        if (molecule.bondOffsets[size] != 2 * (size - 1))
+            return false;
+        for (int atom = 0; atom < size; atom++) {
+            if (molecule.elements[atom] != 'C' || molecule.isPartOfCycle[atom] || molecule.hasMultipleBond[atom] || molecule.numOfSeniorGroups[atom] != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Najde nejdelsi cestu ve strome dvojim prohledanim do sirky v linearnim case. Nejvzdalenejsi atom od libovolneho atomu je
+     * koncem nejdelsi cesty, druhy konec je od nej nejvzdalenejsi. Ze shodne vzdalenych atomu se bere prvni nalezeny, cimz
+     * dostaneme stejnou cestu jako filtrovani vsech kandidatnich cest.
+     * @return Cestu hlavniho retezce.
+     */
+    private List<Atom> getLongestPathInTree() {
+        int size = molecule.atoms.length;
+        int[] parents = new int[size];
+        int[] queue = new int[size];
+        int[] distances = new int[size];
+        int start = findFurthestAtom(0, parents, queue, distances);
+        int end = findFurthestAtom(start, parents, queue, distances);
+
+        List<Atom> path = new ArrayList<>();
+        for (int atom = end; atom != -1; atom = parents[atom])
+            path.add(molecule.atoms[atom]);
+        return path;
+    }
+
+    /**
+     * Prohleda strom do sirky a najde prvni nejvzdalenejsi atom.
+     * @param start Index zacatku prohledavani.
+     * @param parents Pole, kam se ulozi predchudce kazdeho atomu na ceste ze startu, start ma -1.
+     * @param queue Pole pro frontu prohledavani.
+     * @param distances Pole pro vzdalenosti atomu od startu.
+     * @return Index prvniho nalezeneho nejvzdalenejsiho atomu.
+     */
+    private int findFurthestAtom(int start, int[] parents, int[] queue, int[] distances) {
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        parents[start] = -1;
+        distances[start] = 0;
+        int furthest = start;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int bond = molecule.bondOffsets[current]; bond < molecule.bondOffsets[current + 1]; bond++) {
+                int ligand = molecule.bondTargets[bond];
+                if (ligand != parents[current]) {
+                    parents[ligand] = current;
+                    distances[ligand] = distances[current] + 1;
+                    if (distances[ligand] > distances[furthest])
+                        furthest = ligand;
+                    queue[tail++] = ligand;
+                }
+            }
+        }
+        return furthest;
+    }
+
     /**
      * Z molekuly ziska mnoziny cest potencialnich hlavnich retezcu.Heuristicky zacne prohledavanim z atomu obsahujici strukturu, ktera musi byt podle
      * hierarchickych kriterii obsazena v hlavnim retezci.
      * @param molecule Zpracovavana molekula.
-     * @return Mnoziny cest potencialnich hlavnich retezcu.
+     * @return Filtr s mnozinami cest potencialnich hlavnich retezcu, nebo null, pokud molekula obsahuje pouze 1 uhlik.
      */
-    private List<Atom> getPath(Molecule molecule) {
+    Filter getCandidatePaths(Molecule molecule) {
+        this.molecule = molecule;
+        queue = new int[molecule.atoms.length];
+        distances = new int[molecule.atoms.length];
+        Arrays.fill(distances, -1);
+        // Molekulu nemenime, zpracovane atomy odebirame z vlastnich kopii seznamu.
+        atomsWithMostSeniorGroup = null;
+        List<Atom> atomsWithSeniorGroup = molecule.atomsWithSeniorGroups.getOrDefault(molecule.mostSeniorGroup, new ArrayList<>());
         // Pokud ma molekula funkcni skupiny.
-        List<Atom> atomsWithSeniorGroups = molecule.atomsWithSeniorGroups.getOrDefault(molecule.mostSeniorGroup, new ArrayList<>());
-        if (!atomsWithSeniorGroups.isEmpty())
-            return getPath(molecule, atomsWithSeniorGroups);
+        if (!atomsWithSeniorGroup.isEmpty()) {
+            atomsWithMostSeniorGroup = new Starts(molecule, atomsWithSeniorGroup);
+            return getCandidatePaths(atomsWithMostSeniorGroup);
+        }
         // Cykly
-        List<Atom> startsOfTheLongestCycles = molecule.startsOfTheLongestCycles;
-        if (!startsOfTheLongestCycles.isEmpty())
-            return  getPath(molecule, startsOfTheLongestCycles);
+        if (!molecule.startsOfTheLongestCycles.isEmpty())
+            return getCandidatePaths(new Starts(molecule, molecule.startsOfTheLongestCycles));
         // Nasobne vazby
-        List<Atom> atomsWithMultipleBonds = molecule.atomsWithMultipleBonds;
-        if (!atomsWithMultipleBonds.isEmpty())
-            return getPath(molecule, atomsWithMultipleBonds);
+        if (!molecule.atomsWithMultipleBonds.isEmpty())
+            return getCandidatePaths(new Starts(molecule, molecule.atomsWithMultipleBonds));
         // Pokud ani jedno z vyse uvedenych, bude hlavni retezec nejdelsi cesta v molekule - neorientovanem grafu.
         else {
-            List<Atom> furthestAtomsFromStart = BFS(molecule.start, new HashMap<>(), new HashMap<>());
-            // Pro pripad, ze molekula obsahuje pouze 1 uhlik.
-            if (furthestAtomsFromStart.isEmpty()) {
-                List<Atom> methan = new ArrayList<>();
-                methan.add(molecule.start);
-                return methan;
-            }
-            return getPath(molecule, furthestAtomsFromStart);
+            int[] furthestAtomsFromStart = BFS(0, new boolean[molecule.atoms.length]);
+            resetDistances();
+            if (furthestAtomsFromStart.length == 0)
+                return null;
+            List<Atom> furthestAtoms = new ArrayList<>();
+            for (int atom : furthestAtomsFromStart)
+                furthestAtoms.add(molecule.atoms[atom]);
+            return getCandidatePaths(new Starts(molecule, furthestAtoms));
         }
     }
 
     /**
      * Z mnoziny atomu obsahujich danou strukturu zacne prohledavat molekulu a hledat nejdelsi cesty, ktere nasledne profiltruje.
-     * @param molecule Prochazena molekula.
      * @param atoms Mnozina atomu s danou strukturou, z kterych zaciname vyhledavani.
-     * @return profiltrovanou cestu.
+     * @return Filtr s nalezenymi cestami.
      */
-    private List<Atom> getPath(Molecule molecule, List<Atom> atoms) {
-        List<List<Atom>> cyclePaths = new ArrayList<>();
-        List<List<Atom>> completePaths = new ArrayList<>();
-        Map<Atom, List<List<Atom>>> partialPaths = new HashMap<>();
+    private Filter getCandidatePaths(Starts atoms) {
+        List<int[]> cyclePaths = new ArrayList<>();
+        List<int[]> completePaths = new ArrayList<>();
+        Map<Atom, List<int[]>> partialPaths = new HashMap<>();
+        bestCompletePathScores = null;
+        bestCyclePathScores = null;
 
         while (!atoms.isEmpty()) {
-            Atom start = atoms.getFirst();
-            Set<Integer> processedIds = new HashSet<>();
+            int startIndex = atoms.getFirst();
+            Atom start = molecule.atoms[startIndex];
 
             // Pokud je atom v cyklu, retezec jsou atomy tvprici dany cyklus.
-            if (start.isPartOfCycle) {
-                List<Atom> path = getCyclicPaths(start, molecule, atoms);
+            if (molecule.isPartOfCycle[startIndex]) {
+                int[] path = getCyclicPaths(startIndex, atoms);
                 removeProcessedAtoms(path, atoms);
-                cyclePaths.add(path);
+                bestCyclePathScores = addCandidatePath(cyclePaths, path, bestCyclePathScores, true);
             // Pokud je atom list, tak jako potencialni retezce vezmeme vsechny z nej vychazejici cesty.
-            } else if ((int) Stream.of(start.ligands)
-                    .filter(Objects::nonNull)
-                    .filter(atom -> atom.symbol == 'C')
-                    .filter(atom -> processedIds.add(atom.ID))
-                    .count() <= 1) {
-               getAcyclicPaths(molecule, start, completePaths, new HashMap<>(), new HashMap<>(), atoms);
+            } else if (countBondedCarbons(startIndex) <= 1) {
+                for (int[] path : getAcyclicPaths(startIndex, new ArrayList<>(), new boolean[molecule.atoms.length], new boolean[molecule.atoms.length], atoms))
+                    bestCompletePathScores = addCandidatePath(completePaths, path, bestCompletePathScores, false);
            // Pro nelistovy atom take, ale s tim, ze plnou cestu vytvorime spojenim dvou cest.
             } else {
-                partialPaths.put(start, getAcyclicPaths(molecule, start, new ArrayList<>(), new HashMap<>(), new HashMap<>(), atoms));
-                addPartialPaths(partialPaths, molecule, atoms);
+                partialPaths.put(start, getAcyclicPaths(startIndex, new ArrayList<>(), new boolean[molecule.atoms.length], new boolean[molecule.atoms.length], atoms));
+                addPartialPaths(partialPaths, atoms);
             }
         }
-        // Mnoziny potencialnich cest profiltrujeme podle kriterii.
-        Filter filter = new Filter(cyclePaths, completePaths, partialPaths, this);
-        return filter.filter();
+        // Mnoziny potencialnich cest se profiltruji podle kriterii.
+        return new Filter(cyclePaths, completePaths, partialPaths, this);
+    }
+
+    /**
+     * Prida cestu mezi kandidaty, pokud ji filtr jeste muze vybrat. Uplne linearni cesty, stejne jako cyklicke, souperi ve
+     * filtru jen mezi sebou o lexikograficky nejvetsi ohodnoceni a pri shode vyhrava drivejsi cesta. Cestu, ktera neni lepsi
+     * nez nejlepsi dosud nalezena, proto filtr nikdy nevybere, a naopak lepsi cesta vyradi vsechny dosavadni kandidaty.
+     * Z kazde mnoziny tak zustane nejvyse jedna cesta a filtr vybere stejny retezec jako ze vsech cest.
+     * @param paths Kandidatni cesty stejneho druhu.
+     * @param path Nova cesta.
+     * @param bestScores Ohodnoceni nejlepsi dosud nalezene cesty, nebo null.
+     * @param isCycle True, pokud jde o cyklickou cestu.
+     * @return Ohodnoceni nejlepsi cesty po pridani.
+     */
+    private int[] addCandidatePath(List<int[]> paths, int[] path, int[] bestScores, boolean isCycle) {
+        if (!pruning) {
+            paths.add(path);
+            return bestScores;
+        }
+        int[] scores = Filter.getScores(molecule, path, isCycle);
+        if (bestScores != null && Arrays.compare(scores, bestScores) <= 0)
+            return bestScores;
+        paths.clear();
+        paths.add(path);
+        return scores;
+    }
+
+    /**
+     * Spocita ruzne uhliky navazane na atom.
+     * @param atom Index atomu.
+     * @return Pocet navazanych uhliku.
+     */
+    private int countBondedCarbons(int atom) {
+        int count = 0;
+        for (int bond = molecule.bondOffsets[atom]; bond < molecule.bondOffsets[atom + 1]; bond++) {
+            if (molecule.elements[molecule.bondTargets[bond]] == 'C')
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Vrati vzdalenosti atomu dosazenych poslednim prohledavanim do sirky na -1.
+     */
+    private void resetDistances() {
+        for (int i = 0; i < queueLength; i++)
+            distances[queue[i]] = -1;
+        queueLength = 0;
     }
 
     /**
@@ -93,8 +331,8 @@ public class Chain {
      * @param path Cesta, ve ktere hledame taove atomy.
      * @param atomsToProcess Mnozina tomu, ze ktere odebirame.
      */
-    private void removeProcessedAtoms(List<Atom> path, List<Atom> atomsToProcess) {
-        for (Atom atom : path) {
+    private void removeProcessedAtoms(int[] path, Starts atomsToProcess) {
+        for (int atom : path) {
             atomsToProcess.remove(atom);
         }
     }
@@ -102,23 +340,22 @@ public class Chain {
     /**
      * Pokud je u nejakeho atomu pouze jedna castecna cesta, najde dalsi s druhym nejlepsim poctem atomu s danou strukturou.
      * @param partialPaths Prochazene castecne cesty.
-     * @param molecule Molekula, ve ktere jsou dane cesty.
      * @param atoms Atomy, z kterych spoustime vyhledavani.
      */
-    private void addPartialPaths(Map<Atom, List<List<Atom>>> partialPaths, Molecule molecule, List<Atom> atoms) {
-        for (Map.Entry<Atom, List<List<Atom>>> entry : partialPaths.entrySet()) {
-            List<List<Atom>> paths = entry.getValue();
+    private void addPartialPaths(Map<Atom, List<int[]>> partialPaths, Starts atoms) {
+        for (Map.Entry<Atom, List<int[]>> entry : partialPaths.entrySet()) {
+            List<int[]> paths = entry.getValue();
             if (paths.size() == 1) {
-                Map<Integer, Boolean> visitedForBFS = new HashMap<>();
-                Map<Integer, Boolean> visitedForGetPath = new HashMap<>();
-                List<Atom> path = paths.getFirst();
-                path.forEach(atom -> {
-                    visitedForBFS.put(atom.ID, true);
-                    visitedForGetPath.put(atom.ID, true);
-                });
-                Atom start = entry.getKey();
-                visitedForBFS.put(start.ID, false); visitedForGetPath.put(start.ID,false);
-                List<List<Atom>> pathsToAdd = getAcyclicPaths(molecule, start, new ArrayList<>(), visitedForBFS, visitedForGetPath, atoms);
+                boolean[] visitedForBFS = new boolean[molecule.atoms.length];
+                boolean[] visitedForGetPath = new boolean[molecule.atoms.length];
+                int[] path = paths.getFirst();
+                for (int atom : path) {
+                    visitedForBFS[atom] = true;
+                    visitedForGetPath[atom] = true;
+                }
+                int start = molecule.indexOf(entry.getKey());
+                visitedForBFS[start] = false; visitedForGetPath[start] = false;
+                List<int[]> pathsToAdd = getAcyclicPaths(start, new ArrayList<>(), visitedForBFS, visitedForGetPath, atoms);
                 paths.addAll(pathsToAdd);
             }
         }
@@ -126,31 +363,29 @@ public class Chain {
 
     /**
      * Funkce pro nalezeni cesty, pokud atom neni soucasti cyklu.
-     * @param molecule Prochazena molekula.
-     * @param start Atom, ze ktereho spoustime vyhledavani.
+     * @param start Index atomu, ze ktereho spoustime vyhledavani.
      * @param paths Mnozina, do ktere pridame nalezenou cestu.
-     * @param visitedForBFS Mapa s navstivenymi atomy pro funkci BFS.
-     * @param visitedForGetPath Mapa s navstivenymi atomy pro funkci getPath.
+     * @param visitedForBFS Navstivene atomy pro funkci BFS.
+     * @param visitedForGetPath Navstivene atomy pro funkci getPath.
      * @param atoms Atomy, ze kterych spoustime vyhledavani.
      * @return Mnozinu cest.
      */
-    private List<List<Atom>> getAcyclicPaths(Molecule molecule, Atom start, List<List<Atom>> paths, Map<Integer, Boolean> visitedForBFS, Map<Integer, Boolean> visitedForGetPath, List<Atom> atoms) {
-        Map<Integer, Integer> distances = new HashMap<>();
-        List<Atom> furthestAtoms = BFS(start, distances, visitedForBFS);
+    private List<int[]> getAcyclicPaths(int start, List<int[]> paths, boolean[] visitedForBFS, boolean[] visitedForGetPath, Starts atoms) {
+        int[] furthestAtoms = BFS(start, visitedForBFS);
 
-        for (Atom end : furthestAtoms) {
-            visitedForGetPath.put(start.ID, false);
-            visitedForGetPath.put(end.ID, true);
-            List<Atom> path = getPath(end, start, distances, visitedForGetPath, molecule);
+        for (int endIndex : furthestAtoms) {
+            visitedForGetPath[start] = false;
+            visitedForGetPath[endIndex] = true;
+            int[] path = getPath(endIndex, start, visitedForGetPath);
 
             if (path != null) {
                 removeProcessedAtoms(path, atoms);
                 paths.add(path);
             }
         }
-        if (furthestAtoms.isEmpty()) {
-            List<Atom> path = new ArrayList<>();
-            path.add(start);
+        resetDistances();
+        if (furthestAtoms.length == 0) {
+            int[] path = {start};
             removeProcessedAtoms(path, atoms);
             paths.add(path);
         }
@@ -159,42 +394,51 @@ public class Chain {
 
     /**
      * Odstranime atomy s funkcni skupinou z atomu v cyklicke ceste.
-     * @param ligand Atom, o kterem odstranime informace  z molekuly.
-     * @param molecule Molekula, z ktere odstranujeme informace.
+     * @param ligand Index atomu, ktery odstranime ze seznamu atomu s nejvyssi funkcni skupinou.
      */
-    private void removeUsedAtomsWithMostSeniorGroup(Atom ligand, Molecule molecule) {
-        if (ligand.numOfSeniorGroupsMap.getOrDefault(molecule.mostSeniorGroup, 0) > 0) {
-            molecule.atomsWithSeniorGroups.get(molecule.mostSeniorGroup).remove(ligand);
+    private void removeUsedAtomsWithMostSeniorGroup(int ligand) {
+        if (atomsWithMostSeniorGroup != null && molecule.hasSeniorGroup(ligand, molecule.mostSeniorGroup)) {
+            atomsWithMostSeniorGroup.remove(ligand);
         }
     }
 
     /**
-     * Ziska cyklickou cestu
-     * @param start Zacatek cyklu.
-     * @param molecule Molekula, ve ktere se cyklus nachazi
+     * Ziska cyklickou cestu. Pokud jsou v molekule nalezene cykly, projde se nejvetsi z nejmensich cyklu obsahujicich start,
+     * jinak vsechny atomy oznacene jako soucast cyklu.
+     * @param start Index zacatku cyklu.
      * @param atoms Mnozina zacatku startu.
      * @return Cyklickou cestu.
      */
-    private List<Atom> getCyclicPaths(Atom start, Molecule molecule, List<Atom> atoms) {
-        Map<Integer, Boolean> inPath = new HashMap<>();
-        inPath.put(start.ID,true);
-        List<Atom> path = new ArrayList<>();
-        path.add(start);
+    private int[] getCyclicPaths(int start, Starts atoms) {
+        boolean[] isInRing = molecule.isPartOfCycle;
+        int[] ring = molecule.rings != null ? molecule.rings.getLargestRing(start) : null;
+        if (ring != null) {
+            isInRing = new boolean[molecule.atoms.length];
+            for (int atom : ring)
+                isInRing[atom] = true;
+        }
+        boolean[] inPath = new boolean[molecule.atoms.length];
+        inPath[start] = true;
+        int[] path = new int[molecule.atoms.length];
+        int length = 0;
+        path[length++] = start;
 
-        Atom current = start;
+        int current = start;
         while (true) {
             boolean foundNext = false;
-            for (Atom ligand : current.ligands) {
-                if (ligand != null && ligand.isPartOfCycle && !inPath.getOrDefault(ligand.ID, false)) {
-                    inPath.put(ligand.ID, true);
-                    path.add(ligand);
-                    removeUsedAtomsWithMostSeniorGroup(ligand, molecule);
+            for (int bond = molecule.bondOffsets[current]; bond < molecule.bondOffsets[current + 1]; bond++) {
+                int ligand = molecule.bondTargets[bond];
+                if (isInRing[ligand] && !inPath[ligand]) {
+                    inPath[ligand] = true;
+                    path[length++] = ligand;
+                    removeUsedAtomsWithMostSeniorGroup(ligand);
                     current = ligand;
                     foundNext = true;
                     break; // Prerusime for cyklus a pokracujeme v prozkoumavani cesty.
                 }
             }
             if (!foundNext) {
+                path = Arrays.copyOf(path, length);
                 removeProcessedAtoms(path, atoms);
                 return path;
             }
@@ -202,65 +446,66 @@ public class Chain {
     }
 
     /**
-     * Prohleda molekulu do sirky a od zadaneho zacatku najde nejvzdalenejsi atomy.
-     * @param start Zacatek prohledavani.
-     * @param distances Mapa vzdalenosti atomu od startu.
-     * @param visited Mapa, kam ukladame, zda atom byl ci nebyl navstiven.
-     * @return Mnozinu nejvzdalenejsi atomy od startu.
+     * Prohleda molekulu do sirky a od zadaneho zacatku najde nejvzdalenejsi atomy. Vzdalenosti dosazenych atomu zustanou
+     * v poli distances, dokud se nezavola resetDistances.
+     * @param start Index zacatku prohledavani.
+     * @param visited Pole, kam ukladame, zda atom byl ci nebyl navstiven.
+     * @return Indexy nejvzdalenejsich atomu od startu.
      */
-    private List<Atom> BFS(Atom start, Map<Integer, Integer> distances, Map<Integer, Boolean> visited) {
-        Queue<Atom> queue = new LinkedList<>();
-        queue.add(start);
-        visited.put(start.ID , true);
-        distances.put(start.ID, 0);
+    private int[] BFS(int start, boolean[] visited) {
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        visited[start] = true;
+        distances[start] = 0;
 
         int maxDistance = -1;
-        List<Atom> furthestAtoms = new ArrayList<>();
+        int furthestStart = tail;
 
-        while (!queue.isEmpty()) {
-            Atom current = queue.poll();
-            for (Atom ligand : current.ligands) {
-                if (ligand != null && ligand.symbol == 'C' && !visited.getOrDefault(ligand.ID, false) && !ligand.isPartOfCycle) {
-                    visited.put(ligand.ID, true);
+        while (head < tail) {
+            int current = queue[head++];
+            for (int bond = molecule.bondOffsets[current]; bond < molecule.bondOffsets[current + 1]; bond++) {
+                int ligand = molecule.bondTargets[bond];
+                if (molecule.elements[ligand] == 'C' && !visited[ligand] && !molecule.isPartOfCycle[ligand]) {
+                    visited[ligand] = true;
 
-                    int distance = distances.get(current.ID) + 1;
+                    int distance = distances[current] + 1;
+                    // Atomy se do fronty pridavaji podle vzdalenosti, nejvzdalenejsi atomy jsou tedy na jejim konci.
                     if (distance > maxDistance) {
                         maxDistance = distance;
-                        furthestAtoms.clear();
-                        furthestAtoms.add(ligand);
-                    } else if (distance == maxDistance) {
-                        furthestAtoms.add(ligand);
+                        furthestStart = tail;
                     }
 
-                    distances.put(ligand.ID, distance);
-                    queue.add(ligand);
+                    distances[ligand] = distance;
+                    queue[tail++] = ligand;
                 }
             }
         }
-        return furthestAtoms;
+        queueLength = tail;
+        return Arrays.copyOfRange(queue, furthestStart, tail);
     }
 
     /**
-     * Ziska cestu mezi dvema atomy.
-     * @param end Konec cesty.
-     * @param start Zacatek cesty.
-     * @param distances Mapa vzdalenosti atomu od startu.
-     * @param visited Mapa, kam ukladame, zda atom byl ci nebyl navstiven.
-     * @param molecule Prochazena molekula.
+     * Ziska cestu mezi dvema atomy. Pouziva vzdalenosti od startu z posledniho prohledavani do sirky, cesta ma proto
+     * o jeden atom vice, nez je vzdalenost konce.
+     * @param end Index konce cesty.
+     * @param start Index zacatku cesty.
+     * @param visited Pole, kam ukladame, zda atom byl ci nebyl navstiven.
      * @return Cestu mezi startem a zacatkem.
      */
-    private List<Atom> getPath(Atom end, Atom start, Map<Integer, Integer> distances, Map<Integer, Boolean> visited, Molecule molecule) {
-        List<Atom> path = new ArrayList<>();
-        path.add(end);
+    private int[] getPath(int end, int start, boolean[] visited) {
+        int[] path = new int[distances[end] + 1];
+        int length = 0;
+        path[length++] = end;
 
-        Atom current = end;
+        int current = end;
         while (current != start) {
             boolean foundNext = false;
-            for (Atom ligand : current.ligands) {
-                if (ligand != null && ligand.symbol == 'C' && !visited.getOrDefault(ligand.ID, false) && distances.getOrDefault(ligand.ID, -7) == distances.get(current.ID) - 1) {
-                    visited.put(ligand.ID, true);
-                    path.add(ligand);
-                    removeUsedAtomsWithMostSeniorGroup(ligand, molecule);
+            for (int bond = molecule.bondOffsets[current]; bond < molecule.bondOffsets[current + 1]; bond++) {
+                int ligand = molecule.bondTargets[bond];
+                if (molecule.elements[ligand] == 'C' && !visited[ligand] && distances[ligand] != -1 && distances[ligand] == distances[current] - 1) {
+                    visited[ligand] = true;
+                    path[length++] = ligand;
+                    removeUsedAtomsWithMostSeniorGroup(ligand);
                     current = ligand;
                     foundNext = true;
                     break;
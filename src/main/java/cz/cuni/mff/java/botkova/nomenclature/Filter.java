@@ -1,52 +1,123 @@
 package cz.cuni.mff.java.botkova.nomenclature;
 
 import java.util.*;
-import java.util.function.ToIntFunction;
-import java.util.stream.Collectors;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
 /**
- * Trida pro vyfiltrovani potencialnich cest na jednu, ktera nejvice odpovida IUPAC kriteriim.
+ * Trida pro vyfiltrovani potencialnich cest na jednu, ktera nejvice odpovida IUPAC kriteriim. Pro kazde kriterium se kazda
+ * cesta ohodnoti jen jednou. Cesty se hodnoti sekvencne, paralelne jen tehdy, kdyz je kandidatnich cest alespon tolik, kolik
+ * udava nastavitelny prah, aby pojmenovani spoustena z mnoha vlaken nesoupezila o spolecny fond vlaken kvuli par kratkym cestam.
+ * Cesta je pole indexu atomu v kompaktni reprezentaci molekuly, takze se hodnoti primo z poli molekuly.
  */
 public class Filter {
-    private List<List<Atom>> cyclePaths;
-    private List<List<Atom>> completePaths;
-    private Map<Atom, List<List<Atom>>> partialPaths;
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+    private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    private List<int[]> cyclePaths;
+    private List<int[]> completePaths;
+    private Map<Atom, List<int[]>> partialPaths;
     private Chain chain;
-    public Filter(List<List<Atom>> cyclePaths, List<List<Atom>> completePaths, Map<Atom, List<List<Atom>>> partialPaths, Chain chain) {
+    public Filter(List<int[]> cyclePaths, List<int[]> completePaths, Map<Atom, List<int[]>> partialPaths, Chain chain) {
         this.cyclePaths = cyclePaths;
         this.completePaths = completePaths;
         this.partialPaths = partialPaths;
         this.chain = chain;
     }
 
-    private List<List<Atom>> filteredPathsFromCompleteOrCycles = new ArrayList<>();
-    private Map<Atom, List<List<Atom>>> filteredPathsFromPartial = new HashMap<>();
+    private List<int[]> filteredPathsFromCompleteOrCycles = new ArrayList<>();
+    private Map<Atom, List<int[]>> filteredPathsFromPartial = new HashMap<>();
 
     // filtry
-    private static final ToIntFunction<? super Atom> SENIOR_GROUPS_LAMBDA = atom -> atom.numOfSeniorGroups;
-    private static final ToIntFunction<? super Atom> CARBONS_IN_CYCLE_LAMBDA = Filter::countCarbonsInCycle;
-    private static final ToIntFunction<? super Atom> ATOMS_LAMBDA = atom -> 1;
-    private static final ToIntFunction<? super Atom> MULTIPLE_BONDS_LAMBDA = atom -> atom.hasMultipleBond ? 1 : 0;
+    private final IntUnaryOperator seniorGroupsLambda = atom -> Molecule.getFeature(chain.molecule.features[atom], Molecule.SENIOR_GROUPS);
+    private final IntUnaryOperator carbonsInCycleLambda = atom -> Molecule.getFeature(chain.molecule.features[atom], Molecule.CARBONS_IN_CYCLE);
+    private final IntUnaryOperator atomsLambda = atom -> 1;
+    private final IntUnaryOperator multipleBondsLambda = atom -> Molecule.getFeature(chain.molecule.features[atom], Molecule.MULTIPLE_BOND);
+
+    // Ohodnoceni cest podle prave pouzivaneho kriteria.
+    private Map<int[], Integer> scores = new IdentityHashMap<>();
+
+    /**
+     * @return Pocet kandidatnich cest, od ktereho se cesty hodnoti paralelne.
+     */
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Nastavi, od kolika kandidatnich cest se cesty hodnoti paralelne. Plati pro vsechny nasledne filtrovani.
+     * @param threshold Pocet cest, Integer.MAX_VALUE pro vzdy sekvencni hodnoceni.
+     */
+    public static void setParallelThreshold(int threshold) {
+        if (threshold < 1)
+            throw new IllegalArgumentException("Prah musi byt kladny.");
+        parallelThreshold = threshold;
+    }
 
     /**
-     * Spocita uhliky obsahujici mezi ligandy zacatky uhlikovym cyklu.
-     * @param carbon Prochazene uhliky pochazeji z pole ligandu tohoto atomu.
-     * @return Pocet takovych profiltrovanych uhliku.
+     * Ohodnoti cestu podle vsech kriterii v poradi, v jakem je filtr pouziva: pocet funkcnich skupin, pocet atomu, ze kterych
+     * vychazi cyklus (jen u linearnich cest), pocet atomu a pocet nasobnych vazeb. Mezi uplnymi linearnimi cestami, stejne
+     * jako mezi cyklickymi, filtr vybere prvni cestu s lexikograficky nejvetsim ohodnocenim.
+     * @param molecule Molekula v kompaktni reprezentaci.
+     * @param path Cesta.
+     * @param isCycle True, pokud jde o cyklickou cestu.
+     * @return Ohodnoceni cesty.
      */
-    private static int countCarbonsInCycle(Atom carbon) {
-        return (int) Arrays.stream(carbon.ligands)
-                .filter(ligand -> ligand != null && ligand.symbol == 'C' && ligand.isPartOfCycle)
-                .count();
+    static int[] getScores(Molecule molecule, int[] path, boolean isCycle) {
+        int[] scores = new int[4];
+        for (int atom : path) {
+            long features = molecule.features[atom];
+            scores[0] += Molecule.getFeature(features, Molecule.SENIOR_GROUPS);
+            if (!isCycle)
+                scores[1] += Molecule.getFeature(features, Molecule.CARBONS_IN_CYCLE);
+            scores[3] += Molecule.getFeature(features, Molecule.MULTIPLE_BOND);
+        }
+        scores[2] = path.length;
+        return scores;
     }
 
     /**
      * Funkce bere mnoziny potencialnich cest rozdelenych na cyklicke, uplne a castecne, kdy pro uplnou cetu je potreba 2 spojit.
      * @return Cestu reprezentujici hlavni retezec molekuly podle IUPAC kriterii.
      */
+    @SuppressWarnings("try")
     public List<Atom> filter() {
-        int maxNumSeniorGroupsCycle = getMaxNumOf(cyclePaths, SENIOR_GROUPS_LAMBDA);
-        int maxNumSeniorGroupsComplete = getMaxNumOf(completePaths, SENIOR_GROUPS_LAMBDA);
-        int[] maxNumSeniorGroupsPartialArray = getMaxNumOf(partialPaths, SENIOR_GROUPS_LAMBDA);
+        try (StageTimer timer = StageTimer.start(Metrics.Stage.FILTER_SENIOR_GROUPS, chain.molecule.atoms.length)) {
+            selectPathsWithMostSeniorGroups();
+        }
+
+        // Z linearnich cest vybereme tu, ktera obsahuje vice atomu, z kterych vychazi cyklus.
+        if (!chain.isCycle) selectPathsFromCompleteOrCycleOrFromPartial(carbonsInCycleLambda, Metrics.Stage.FILTER_CARBONS_IN_CYCLE);
+        // Pote ty nejdelsi.
+        selectPathsFromCompleteOrCycleOrFromPartial(atomsLambda, Metrics.Stage.FILTER_ATOMS);
+        // Pote ty, co obsahuji nejvice nasobnych vazeb.
+        selectPathsFromCompleteOrCycleOrFromPartial(multipleBondsLambda, Metrics.Stage.FILTER_MULTIPLE_BONDS);
+
+        //Pokud zbyly rozlozene cesty, tak z nich pro kazdy atom vytvorime uplnou cestu, kterou presuneme do mnozin vyslednych cest.
+        if (!filteredPathsFromPartial.isEmpty()) {
+            if (!filteredPathsFromPartial.values().isEmpty()) {
+                Atom key = filteredPathsFromPartial.keySet().iterator().next();
+                List<int[]> value = filteredPathsFromPartial.get(key);
+                List<int[]> pathToBeConnected = new ArrayList<>();
+                pathToBeConnected.add(value.getFirst());
+                pathToBeConnected.add(value.getLast());
+                makePartialPathsComplete(filteredPathsFromPartial, filteredPathsFromCompleteOrCycles, pathToBeConnected, key);
+            }
+        }
+        List<Atom> path = new ArrayList<>();
+        for (int atom : filteredPathsFromCompleteOrCycles.getFirst())
+            path.add(chain.molecule.atoms[atom]);
+        return path;
+    }
+
+    /**
+     * Vybere cesty s nejvice funkcnimi skupinami. Pokud zadna cesta funkcni skupinu nema, daji se prednost cyklum.
+     */
+    private void selectPathsWithMostSeniorGroups() {
+        score(seniorGroupsLambda, cyclePaths, completePaths, partialPaths);
+        int maxNumSeniorGroupsCycle = getMaxNumOf(cyclePaths);
+        int maxNumSeniorGroupsComplete = getMaxNumOf(completePaths);
+        int[] maxNumSeniorGroupsPartialArray = getMaxNumOf(partialPaths);
         int maxNumSeniorGroupsPartial = Arrays.stream(maxNumSeniorGroupsPartialArray).sum();
         if (maxNumSeniorGroupsPartial != 0) maxNumSeniorGroupsPartial--;
 
@@ -55,14 +126,14 @@ public class Filter {
             // V pripade shody s linearnimi cestami, cyklicke maji prednost.
             if (maxNumSeniorGroupsCycle >= Math.max(maxNumSeniorGroupsComplete, maxNumSeniorGroupsPartial)) {
                 chain.isCycle = true;
-                filteredPathsFromCompleteOrCycles = filterPathsWithMost(cyclePaths, maxNumSeniorGroupsCycle, SENIOR_GROUPS_LAMBDA);
+                filteredPathsFromCompleteOrCycles = filterPathsWithMost(cyclePaths, maxNumSeniorGroupsCycle);
             } else if (maxNumSeniorGroupsComplete > maxNumSeniorGroupsPartial) {
-                filteredPathsFromCompleteOrCycles = filterPathsWithMost(completePaths, maxNumSeniorGroupsComplete, SENIOR_GROUPS_LAMBDA);
+                filteredPathsFromCompleteOrCycles = filterPathsWithMost(completePaths, maxNumSeniorGroupsComplete);
             } else if (maxNumSeniorGroupsComplete == maxNumSeniorGroupsPartial) {
-                filteredPathsFromCompleteOrCycles = filterPathsWithMost(completePaths, maxNumSeniorGroupsComplete, SENIOR_GROUPS_LAMBDA);
-                filteredPathsFromPartial = filterPathsWithMost(partialPaths, maxNumSeniorGroupsPartialArray, filteredPathsFromCompleteOrCycles, SENIOR_GROUPS_LAMBDA);
+                filteredPathsFromCompleteOrCycles = filterPathsWithMost(completePaths, maxNumSeniorGroupsComplete);
+                filteredPathsFromPartial = filterPathsWithMost(partialPaths, maxNumSeniorGroupsPartialArray, filteredPathsFromCompleteOrCycles);
             } else {
-                filteredPathsFromPartial = filterPathsWithMost(partialPaths, maxNumSeniorGroupsPartialArray, filteredPathsFromCompleteOrCycles, SENIOR_GROUPS_LAMBDA);
+                filteredPathsFromPartial = filterPathsWithMost(partialPaths, maxNumSeniorGroupsPartialArray, filteredPathsFromCompleteOrCycles);
             }
         } else {
             // Dalsim kriteriem po funkcnich skupinach je cyklicnost.
@@ -74,77 +145,113 @@ public class Filter {
                 filteredPathsFromPartial = partialPaths;
             }
         }
-
-        // Z linearnich cest vybereme tu, ktera obsahuje vice atomu, z kterych vychazi cyklus.
-        if (!chain.isCycle) selectPathsFromCompleteOrCycleOrFromPartial(CARBONS_IN_CYCLE_LAMBDA);
-        // Pote ty nejdelsi.
-        selectPathsFromCompleteOrCycleOrFromPartial(ATOMS_LAMBDA);
-        // Pote ty, co obsahuji nejvice nasobnych vazeb.
-        selectPathsFromCompleteOrCycleOrFromPartial(MULTIPLE_BONDS_LAMBDA);
-
-        //Pokud zbyly rozlozene cesty, tak z nich pro kazdy atom vytvorime uplnou cestu, kterou presuneme do mnozin vyslednych cest.
-        if (!filteredPathsFromPartial.isEmpty()) {
-            if (!filteredPathsFromPartial.values().isEmpty()) {
-                Atom key = filteredPathsFromPartial.keySet().iterator().next();
-                List<List<Atom>> value = filteredPathsFromPartial.get(key);
-                List<List<Atom>> pathToBeConnected = new ArrayList<>();
-                pathToBeConnected.add(value.getFirst());
-                pathToBeConnected.add(value.getLast());
-                makePartialPathsComplete(filteredPathsFromPartial, filteredPathsFromCompleteOrCycles, pathToBeConnected, key);
-            }
-        }
-        return filteredPathsFromCompleteOrCycles.getFirst();
     }
 
     /**
      * Zredukuje tri puvodni mnoziny nejvice na dve, v pripade, ze cykly mene odpovidaji kriteriim nez linearni uplne cesty, ktere odpovidaji doposavad
      * stejnym parametrum jako linearni castecne. Pokud ne, tak zbyde pouze jedna mnozina obsahujici cyklicke cesty.
      * @param lambda Uvazovany filtr.
+     * @param stage Faze, do ktere se zaznamena doba filtrovani.
+     */
+    @SuppressWarnings("try")
+    private void selectPathsFromCompleteOrCycleOrFromPartial(IntUnaryOperator lambda, Metrics.Stage stage) {
+        try (StageTimer timer = StageTimer.start(stage, chain.molecule.atoms.length)) {
+            selectPathsFromCompleteOrCycleOrFromPartial(lambda);
+        }
+    }
+
+    /**
+     * Zredukuje mnoziny cest podle kriteria, viz selectPathsFromCompleteOrCycleOrFromPartial s fazi.
+     * @param lambda Uvazovany filtr.
      */
-    private void selectPathsFromCompleteOrCycleOrFromPartial(ToIntFunction<? super Atom> lambda) {
-        int maxNumComplete = getMaxNumOf(filteredPathsFromCompleteOrCycles, lambda);
-        int[] maxNumPartialArray = getMaxNumOf(filteredPathsFromPartial, lambda);
+    private void selectPathsFromCompleteOrCycleOrFromPartial(IntUnaryOperator lambda) {
+        score(lambda, filteredPathsFromCompleteOrCycles, filteredPathsFromPartial);
+        int maxNumComplete = getMaxNumOf(filteredPathsFromCompleteOrCycles);
+        int[] maxNumPartialArray = getMaxNumOf(filteredPathsFromPartial);
         int maxNumPartial = Arrays.stream(maxNumPartialArray).sum();
         if (maxNumComplete > maxNumPartial) {
             filteredPathsFromPartial.clear();
         } else if (maxNumPartial > maxNumComplete)
             filteredPathsFromCompleteOrCycles.clear();
-        filteredPathsFromCompleteOrCycles = filterPathsWithMost(filteredPathsFromCompleteOrCycles, maxNumComplete, lambda);
-        filteredPathsFromPartial = filterPathsWithMost(filteredPathsFromPartial, maxNumPartialArray, filteredPathsFromCompleteOrCycles, lambda);
+        filteredPathsFromCompleteOrCycles = filterPathsWithMost(filteredPathsFromCompleteOrCycles, maxNumComplete);
+        filteredPathsFromPartial = filterPathsWithMost(filteredPathsFromPartial, maxNumPartialArray, filteredPathsFromCompleteOrCycles);
+    }
+
+    /**
+     * Ohodnoti cesty podle kriteria. Hodnota cesty je soucet hodnot jejich atomu.
+     * @param lambda Uvazovany filtr.
+     * @param paths Mnozina uplnych cest (linearnich nebo cyklickych).
+     * @param partialPaths Mnozina castecnych cest.
+     */
+    private void score(IntUnaryOperator lambda, List<int[]> paths, Map<Atom, List<int[]>> partialPaths) {
+        score(lambda, paths, null, partialPaths);
+    }
+
+    /**
+     * Ohodnoti cesty podle kriteria. Hodnota cesty je soucet hodnot jejich atomu.
+     * @param lambda Uvazovany filtr.
+     * @param cyclePaths Mnozina cyklickych cest.
+     * @param paths Mnozina uplnych cest.
+     * @param partialPaths Mnozina castecnych cest.
+     */
+    private void score(IntUnaryOperator lambda, List<int[]> cyclePaths, List<int[]> paths, Map<Atom, List<int[]>> partialPaths) {
+        List<int[]> allPaths = new ArrayList<>();
+        if (cyclePaths != null) allPaths.addAll(cyclePaths);
+        if (paths != null) allPaths.addAll(paths);
+        if (partialPaths != null) partialPaths.values().forEach(allPaths::addAll);
+
+        int[] values = new int[allPaths.size()];
+        IntStream indices = IntStream.range(0, values.length);
+        if (values.length >= parallelThreshold)
+            indices = indices.parallel();
+        indices.forEach(i -> {
+            int sum = 0;
+            for (int atom : allPaths.get(i))
+                sum += lambda.applyAsInt(atom);
+            values[i] = sum;
+        });
+
+        scores = new IdentityHashMap<>(2 * values.length);
+        for (int i = 0; i < values.length; i++)
+            scores.put(allPaths.get(i), values[i]);
     }
 
     /**
      * Z mnoziny uplnych cest (linearnich nebo cyklickych )ziska maximalni pocet profiltrovanych uhliku v nejake ceste.
      * @param paths Uvazovana mnozina.
-     * @param lambda Uvazovany filtr.
      * @return Maximalni pocet profiltrovanych uhliku.
      */
-    private int getMaxNumOf(List<List<Atom>> paths, ToIntFunction<? super Atom> lambda) {
+    private int getMaxNumOf(List<int[]> paths) {
         if (paths == null) return 0;
 
-        return paths.parallelStream()
-                .mapToInt(path -> path.parallelStream()
-                        .mapToInt(lambda).sum())
-                .max().orElse(0);
+        int max = 0;
+        boolean isEmpty = true;
+        for (int[] path : paths) {
+            int num = scores.get(path);
+            if (isEmpty || num > max) {
+                max = num;
+                isEmpty = false;
+            }
+        }
+        return max;
     }
 
     /**
      * Z mnoziny castecnych cest ziska maximalni pocet profiltrovanych uhliku v nejake ceste.
      * @param partialPaths Mnozina castecnych cest.
-     * @param lambda Uvazovany filtr.
      * @return Maximalni pocet profiltrovanych uhliku.
      */
-    private int[] getMaxNumOf(Map<Atom, List<List<Atom>>> partialPaths, ToIntFunction<? super Atom> lambda) {
+    private int[] getMaxNumOf(Map<Atom, List<int[]>> partialPaths) {
         if (partialPaths == null) return new int[]{0, 0};
 
         // Pokud pouze jedna cesta obsahuje max pocet, jako druhou vybereme tu s druhym maximalnim poctem.
         int max1 = Integer.MIN_VALUE;
         int max2 = Integer.MIN_VALUE;
 
-        for (Map.Entry<Atom, List<List<Atom>>> entry : partialPaths.entrySet()) {
-            List<List<Atom>> paths = entry.getValue();
-            for (List<Atom> path : paths) {
-                int num = path.parallelStream().mapToInt(lambda).sum();
+        for (Map.Entry<Atom, List<int[]>> entry : partialPaths.entrySet()) {
+            List<int[]> paths = entry.getValue();
+            for (int[] path : paths) {
+                int num = scores.get(path);
 
                 if (num >= max1) {
                     max2 = max1;
@@ -161,35 +268,40 @@ public class Filter {
      * Z mnoziny uplnych cest (linearnich nebo cyklickych) vyfiltruje ty, ktere obsahuji dany pocet uhliku s danou strukturou.
      * @param paths Uvazovana mnozina.
      * @param max Maximalni pocet uhliku s danou strukturou.
-     * @param lambda Uvazovany filtr.
      * @return Vyfiltrovane cesty.
      */
-    private List<List<Atom>> filterPathsWithMost(List<List<Atom>> paths, int max, ToIntFunction<? super Atom> lambda) {
+    private List<int[]> filterPathsWithMost(List<int[]> paths, int max) {
         if (paths == null) return null;
 
-        return paths.parallelStream()
-                .filter(path -> path.parallelStream()
-                        .mapToInt(lambda).sum() == max)
-                .collect(Collectors.toList());
+        List<int[]> filtered = new ArrayList<>();
+        for (int[] path : paths) {
+            if (scores.get(path) == max)
+                filtered.add(path);
+        }
+        return filtered;
     }
 
     /**
      * Pokud v prubehu filtrovani jsou u daneho atomu pouze
-     * dve cesty, spojime je a presuneme do mnoziny uplnych cest.
+     * dve cesty, spojime je a presuneme do mnoziny uplnych cest. Obe cesty konci v atomu, ktery se ve spojene ceste
+     * vyskytne jen jednou. Pokud jde dvakrat o tutez cestu, spoji se s sebou samou bez posledniho atomu.
      * @param partialPaths Mnozina castecnych cest.
      * @param completePaths  Mnozina uplnych cest.
      * @param filteredPaths Mnozina vyfiltrovanych cest.
      * @param atom Atom, jehoz castecne cesty prochazime.
      */
-    private  void makePartialPathsComplete(Map<Atom, List<List<Atom>>> partialPaths, List<List<Atom>> completePaths, List<List<Atom>> filteredPaths, Atom atom) {
+    private  void makePartialPathsComplete(Map<Atom, List<int[]>> partialPaths, List<int[]> completePaths, List<int[]> filteredPaths, Atom atom) {
         if (filteredPaths.size() == 2) {
-            List<Atom> startPath = filteredPaths.getFirst();
-            List<Atom> endPath = filteredPaths.getLast();
-            endPath = endPath.reversed();
-            endPath.removeFirst();
+            int[] startPath = filteredPaths.getFirst();
+            int[] endPath = filteredPaths.getLast();
+            if (startPath == endPath)
+                startPath = endPath = Arrays.copyOf(startPath, startPath.length - 1);
+            int endLength = startPath == endPath ? endPath.length : endPath.length - 1;
 
-            startPath.addAll(endPath);
-            completePaths.add(startPath);
+            int[] path = Arrays.copyOf(startPath, startPath.length + endLength);
+            for (int i = 0; i < endLength; i++)
+                path[startPath.length + i] = endPath[endLength - 1 - i];
+            completePaths.add(path);
 
             partialPaths.remove(atom);
         }
@@ -200,20 +312,19 @@ public class Filter {
      * @param partialPaths Mnozina castecnych cest.
      * @param maxSeniorGroupsArray Seznam atomu obsahuji zkoumanou strukturu.
      * @param completePaths Mnozina uplnych cest.
-     * @param lambda Uvazovany filtr.
      * @return
      */
-    private Map<Atom, List<List<Atom>>> filterPathsWithMost(Map<Atom, List<List<Atom>>> partialPaths, int[] maxSeniorGroupsArray, List<List<Atom>> completePaths, ToIntFunction<? super Atom> lambda) {
+    private Map<Atom, List<int[]>> filterPathsWithMost(Map<Atom, List<int[]>> partialPaths, int[] maxSeniorGroupsArray, List<int[]> completePaths) {
         if (partialPaths == null) return null;
 
-        for (Map.Entry<Atom, List<List<Atom>>> entry : partialPaths.entrySet()) {
-            List<List<Atom>> pathsWithMostSeniorGroups = filterPathsWithMost(entry.getValue(), maxSeniorGroupsArray[0], lambda);
-            List<List<Atom>> pathsWithSecondMostSeniorGroups = new ArrayList<>();
+        for (Map.Entry<Atom, List<int[]>> entry : partialPaths.entrySet()) {
+            List<int[]> pathsWithMostSeniorGroups = filterPathsWithMost(entry.getValue(), maxSeniorGroupsArray[0]);
+            List<int[]> pathsWithSecondMostSeniorGroups = new ArrayList<>();
 
             if (pathsWithMostSeniorGroups.size() == 1) {
                 pathsWithSecondMostSeniorGroups = entry.getValue();
                 pathsWithSecondMostSeniorGroups.removeAll(pathsWithMostSeniorGroups);
-                pathsWithSecondMostSeniorGroups = filterPathsWithMost(pathsWithSecondMostSeniorGroups, maxSeniorGroupsArray[1], lambda);
+                pathsWithSecondMostSeniorGroups = filterPathsWithMost(pathsWithSecondMostSeniorGroups, maxSeniorGroupsArray[1]);
             }
             pathsWithMostSeniorGroups.addAll(pathsWithSecondMostSeniorGroups);
             partialPaths.put(entry.getKey(), pathsWithMostSeniorGroups);
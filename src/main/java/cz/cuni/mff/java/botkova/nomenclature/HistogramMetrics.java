@@ -0,0 +1,109 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Metrics, ktere dobu behu a alokovanou pamet kazde faze ukladaji do histogramu v pameti. Histogramy jsou zvlast pro kazdou
+ * velikostni tridu molekul, trida k obsahuje molekuly s 2^k az 2^(k+1)-1 atomy, takze lze zjistit, ktera faze zpomaluje
+ * ktere molekuly.
+ */
+public class HistogramMetrics implements Metrics {
+    private static final int SIZE_CLASSES = 32;
+
+    /**
+     * Histogramy jedne faze a velikostni tridy.
+     */
+    public static class Histograms {
+        public final LatencyHistogram nanos = new LatencyHistogram();
+        public final LatencyHistogram allocatedBytes = new LatencyHistogram();
+    }
+
+    private final AtomicReferenceArray<Histograms> histograms = new AtomicReferenceArray<>(Stage.values().length * SIZE_CLASSES);
+
+    @Override
+    public void record(Stage stage, int atoms, long nanos, long allocatedBytes) {
+        Histograms stageHistograms = getOrCreate(stage, getSizeClass(atoms));
+        stageHistograms.nanos.record(nanos);
+        if (allocatedBytes != -1)
+            stageHistograms.allocatedBytes.record(allocatedBytes);
+    }
+
+    /**
+     * @param atoms Pocet atomu.
+     * @return Velikostni tridu molekuly s danym poctem atomu.
+     */
+    public static int getSizeClass(int atoms) {
+        return atoms <= 1 ? 0 : 31 - Integer.numberOfLeadingZeros(atoms);
+    }
+
+    /**
+     * @param stage Faze.
+     * @param sizeClass Velikostni trida.
+     * @return Histogramy faze pro molekuly z dane velikostni tridy, nebo null, pokud v ni zadna molekula nebyla.
+     */
+    public Histograms get(Stage stage, int sizeClass) {
+        return histograms.get(stage.ordinal() * SIZE_CLASSES + sizeClass);
+    }
+
+    /**
+     * @param stage Faze.
+     * @return Histogramy faze pres vsechny velikostni tridy.
+     */
+    public Histograms get(Stage stage) {
+        Histograms total = new Histograms();
+        for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+            Histograms stageHistograms = get(stage, sizeClass);
+            if (stageHistograms != null) {
+                total.nanos.add(stageHistograms.nanos);
+                total.allocatedBytes.add(stageHistograms.allocatedBytes);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param stage Faze.
+     * @param sizeClass Velikostni trida.
+     * @return Histogramy faze pro molekuly z dane velikostni tridy, ktere se pri prvnim pouziti vytvori.
+     */
+    private Histograms getOrCreate(Stage stage, int sizeClass) {
+        int index = stage.ordinal() * SIZE_CLASSES + sizeClass;
+        Histograms stageHistograms = histograms.get(index);
+        if (stageHistograms == null) {
+            histograms.compareAndSet(index, null, new Histograms());
+            stageHistograms = histograms.get(index);
+        }
+        return stageHistograms;
+    }
+
+    /**
+     * Vynuluje vsechny histogramy.
+     */
+    public void reset() {
+        for (int i = 0; i < histograms.length(); i++)
+            histograms.set(i, null);
+    }
+
+    /**
+     * @return Tabulku s poctem behu, percentily doby behu a alokovane pameti pro kazdou fazi a velikostni tridu.
+     */
+    @Override
+    public String toString() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%-24s %9s %10s %10s %10s %12s %12s%n",
+                "faze", "atomy", "pocet", "p50 ms", "p99 ms", "p50 B", "p99 B"));
+        for (Stage stage : Stage.values()) {
+            for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+                Histograms stageHistograms = get(stage, sizeClass);
+                if (stageHistograms == null)
+                    continue;
+                String atoms = (1L << sizeClass) + "-" + ((1L << (sizeClass + 1)) - 1);
+                table.append(String.format(Locale.ROOT, "%-24s %9s %10d %10.3f %10.3f %12d %12d%n", stage, atoms,
+                        stageHistograms.nanos.getCount(),
+                        stageHistograms.nanos.getPercentile(50) / 1e6, stageHistograms.nanos.getPercentile(99) / 1e6,
+                        stageHistograms.allocatedBytes.getPercentile(50), stageHistograms.allocatedBytes.getPercentile(99)));
+            }
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,111 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram nezapornych hodnot, napriklad dob zpracovani v nanosekundach, s pevnou velikosti pameti. Hodnoty mensi nez
+ * pocet podintervalu se pocitaji presne, vetsi hodnoty se radi do intervalu mezi dvema mocninami dvojky, ktery je rozdelen na
+ * SUB_BUCKETS stejne dlouhych podintervalu, takze relativni chyba percentilu je nejvyse 1 / SUB_BUCKETS. Hodnoty lze
+ * zaznamenavat z vice vlaken soubezne.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(getIndex(Long.MAX_VALUE) + 1);
+
+    /**
+     * Zaznamena hodnotu. Zaporne hodnoty se zaznamenaji jako nula.
+     * @param value Hodnota.
+     */
+    public void record(long value) {
+        counts.incrementAndGet(getIndex(Math.max(value, 0)));
+    }
+
+    /**
+     * @return Pocet zaznamenanych hodnot.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++)
+            count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * @param percentile Percentil od 0 do 100.
+     * @return Horni mez podintervalu, do ktereho padne dany percentil zaznamenanych hodnot, nebo 0, pokud nebyla zaznamenana
+     * zadna hodnota.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentil musi byt mezi 0 a 100.");
+        long count = getCount();
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return getUpperBound(i);
+        }
+        return getUpperBound(counts.length() - 1);
+    }
+
+    /**
+     * @return Horni mez podintervalu nejvetsi zaznamenane hodnoty, nebo 0, pokud nebyla zaznamenana zadna hodnota.
+     */
+    public long getMax() {
+        for (int i = counts.length() - 1; i >= 0; i--) {
+            if (counts.get(i) > 0)
+                return getUpperBound(i);
+        }
+        return 0;
+    }
+
+    /**
+     * Pricte k histogramu hodnoty zaznamenane v jinem histogramu.
+     * @param other Jiny histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count != 0)
+                counts.addAndGet(i, count);
+        }
+    }
+
+    /**
+     * Vynuluje histogram.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+    }
+
+    /**
+     * @param value Nezaporna hodnota.
+     * @return Index podintervalu, do ktereho hodnota patri.
+     */
+    private static int getIndex(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * @param index Index podintervalu.
+     * @return Nejvetsi hodnotu, ktera do podintervalu patri.
+     */
+    private static long getUpperBound(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long mantissa = SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long lowerBound = mantissa << shift;
+        return lowerBound + ((1L << shift) - 1);
+    }
+}
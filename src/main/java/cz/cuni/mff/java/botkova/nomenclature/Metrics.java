@@ -0,0 +1,44 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+/**
+ * Zaznam doby behu a alokovane pameti jednotlivych fazi pojmenovani. Implementace se nastavuje pomoci
+ * Nomenclature.setMetrics, vychozi je NONE, pri ktere se nic nemeri. Metoda record se vola z vlaken, ktera molekuly
+ * pojmenovavaji, musi tedy byt bezpecna pro soubezne volani a rychla.
+ */
+public interface Metrics {
+    /**
+     * Faze pojmenovani. Faze se mohou vnorovat, napriklad pojmenovani vedlejsich retezcu obsahuje vsechny faze pojmenovani
+     * kazdeho vedlejsiho retezce, ktere se zaznamenaji i samostatne.
+     */
+    enum Stage {
+        PARSE_SMILES, // SMILESParser.parseMolecule
+        IDENTIFY_SENIOR_GROUPS, // Hledani funkcnich skupin a nasobnych vazeb v Molecule.identifyStructures
+        IDENTIFY_CYCLES, // Hledani cyklu v Molecule.identifyStructures
+        LONGEST_PATH_IN_TREE, // Hlavni retezec nasyceneho uhlovodiku bez cyklu, misto kandidatnich cest a filtru
+        CANDIDATE_PATHS, // Generovani kandidatnich cest v Chain
+        FILTER_SENIOR_GROUPS, // Kriterium poctu funkcnich skupin ve Filter
+        FILTER_CARBONS_IN_CYCLE, // Kriterium poctu atomu, ze kterych vychazi cyklus, ve Filter
+        FILTER_ATOMS, // Kriterium delky ve Filter
+        FILTER_MULTIPLE_BONDS, // Kriterium poctu nasobnych vazeb ve Filter
+        PARSE_CHAIN, // Nomenclature.parse, lokanty funkcnich skupin, nasobnych vazeb a vedlejsich retezcu
+        SIDE_CHAIN_NAMES, // Nomenclature.getSideChainNames
+        NAME // Nomenclature.name, sestaveni nazvu
+    }
+
+    /**
+     * Zaznamena jeden beh faze.
+     * @param stage Faze.
+     * @param atoms Pocet atomu zpracovavane molekuly, u vedlejsiho retezce pocet atomu retezce.
+     * @param nanos Doba behu v nanosekundach.
+     * @param allocatedBytes Pamet alokovana behem faze vlaknem, ktere ji provadelo, v bajtech, nebo -1, pokud ji JVM
+     *                       neumi merit. Alokace v jinych vlaknech, napriklad pri paralelnim pojmenovani vedlejsich retezcu,
+     *                       se nezapocitava.
+     */
+    void record(Stage stage, int atoms, long nanos, long allocatedBytes);
+
+    /**
+     * Nic nemeri. Pri jejim nastaveni se nevola ani mereni casu.
+     */
+    Metrics NONE = (stage, atoms, nanos, allocatedBytes) -> {
+    };
+}
@@ -3,7 +3,8 @@ package cz.cuni.mff.java.botkova.nomenclature;
 import java.util.*;
 
 /**
- * Molekula je reprezentovana jako neorientovany graf.
+ * Molekula je reprezentovana jako neorientovany graf. Atomy z ni zadane slouzi pouze k sestaveni molekuly, pojmenovani probiha
+ * nad kompaktni reprezentaci v primitivnich polich, kde je kazdy atom urcen svym indexem.
  */
 public class Molecule {
     public int numberOfAtoms = 1;
@@ -14,19 +15,375 @@ public class Molecule {
     public List<Atom[]> startsAndEndsOfCycles = new ArrayList<>();
     public int maxLengthOfCycle = 0;
     public List<Atom> startsOfTheLongestCycles = new ArrayList<>();
+    public RingPerception rings; // Cykly v uhlikove kostre, u vedlejsich retezcu null
+
+    // Kompaktni reprezentace. Atom s indexem 0 je start, vazby atomu i jsou v polich vazeb na pozicich bondOffsets[i] az bondOffsets[i+1]-1.
+    public Atom[] atoms;
+    public byte[] elements; // Symbol prvku
+    public int[] bondOffsets;
+    public int[] bondTargets; // Index navazaneho atomu
+    public byte[] bondOrders; // Nasobnost vazby
+    public byte[] hydrogens; // Pocet navazanych vodiku
+    public int[] seniorGroupMasks; // Bit i je nastaven, pokud atom nese funkcni skupinu Nomenclature.SENIOR_GROUPS[i]
+    public byte[] numOfSeniorGroups; // Celkovy pocet funkcnich skupin pripojenych k atomu
+    public boolean[] isPartOfCycle;
+    public boolean[] hasMultipleBond;
+    public long[] features; // Vlastnosti atomu zabalene do jednoho cisla po 8 bitech, ctou se pomoci getFeature
+    private int[] indices; // Index atomu podle jeho ID
+    private int identifiedStartBonds = -1; // Pocet vazeb startu, ktere se prochazi pri identifikaci struktur, -1 znaci vsechny
+    private boolean identified = false;
+    private InvalidLigandConfigurationException identificationError; // Vyjimka z prvni identifikace struktur, nebo null
+
+    private static final int COOH = Nomenclature.getIndex(Nomenclature.SENIOR_GROUPS, "-COOH");
+    private static final int SO3H = Nomenclature.getIndex(Nomenclature.SENIOR_GROUPS, "-SO3H");
+    private static final int CHO = Nomenclature.getIndex(Nomenclature.SENIOR_GROUPS, "-CHO");
+    private static final int CO = Nomenclature.getIndex(Nomenclature.SENIOR_GROUPS, "-CO");
+    private static final int OH = Nomenclature.getIndex(Nomenclature.SENIOR_GROUPS, "-OH");
+    private static final int SH = Nomenclature.getIndex(Nomenclature.SENIOR_GROUPS, "-SH");
+    private static final int NH2 = Nomenclature.getIndex(Nomenclature.SENIOR_GROUPS, "-NH2");
+    private static final int NO2 = Nomenclature.getIndex(Nomenclature.SENIOR_GROUPS, "-NO2");
+
+    // Pozice vlastnosti v poli features. Pocty ligandu se pocitaji jako obsazena vazebna mista, takze nasobna vazba se
+    // pocita tolikrat, kolik je jeji nasobnost. Vlastnosti znamene az po identifikaci struktur jsou do te doby nulove.
+    public static final int HYDROGENS = 0;
+    public static final int OXYGENS = 8;
+    public static final int NITROGENS = 16;
+    public static final int SULFURS = 24;
+    public static final int CARBONS_IN_CYCLE = 32; // Uhliky, ktere lezi v cyklu
+    public static final int SENIOR_GROUPS = 40; // Pocet funkcnich skupin
+    public static final int MULTIPLE_BOND = 48; // 1, pokud je atom soucasti nasobne vazby, viz hasMultipleBond
+    public static final int SENIOR_GROUP_MASK = 56; // Dolnich 8 bitu seniorGroupMasks, coz jsou vsechny funkcni skupiny
+
     // Zbytek molekuly ziskame pruchodem pres navazane atomy na start.
     public Molecule(Atom start) {
         this.start = start;
     }
 
     /**
-     * Poznacime do mapy, na jakych atomech se nachazi dana funkcni skupina, a na jakych atomech zacina cyklus.
+     * Poznacime do mapy, na jakych atomech se nachazi dana funkcni skupina, a na jakych atomech zacina cyklus. Struktury se
+     * identifikuji jen pri prvnim volani, dalsi volani je nemeni, pripadne znovu vyhodi stejnou vyjimku. Pojmenovani uz
+     * molekulu nemeni, lze ji tedy pojmenovat opakovane i z vice vlaken.
      * @throws InvalidLigandConfigurationException
      */
-    public void identifyStructures() throws InvalidLigandConfigurationException {
-        identifySeniorGroupsAndMultipleBonds(start, new HashMap<>());
+    @SuppressWarnings("try")
+    public synchronized void identifyStructures() throws InvalidLigandConfigurationException {
+        if (identified) {
+            if (identificationError != null)
+                throw identificationError;
+            return;
+        }
+        identified = true;
+        compact();
+        countLigands();
+        try (StageTimer timer = StageTimer.start(Metrics.Stage.IDENTIFY_SENIOR_GROUPS, atoms.length)) {
+            identifySeniorGroupsAndMultipleBonds();
+        } catch (InvalidLigandConfigurationException e) {
+            identificationError = e;
+            throw e;
+        }
         getMostSeniorGroup();
-        findPathBetweenTwoAtoms();
+        // Vedlejsi retezce cykly nehledaji, informace o nich prebiraji z puvodni molekuly.
+        if (identifiedStartBonds == -1) {
+            try (StageTimer timer = StageTimer.start(Metrics.Stage.IDENTIFY_CYCLES, atoms.length)) {
+                identifyCycles();
+            }
+        }
+        addStructureFeatures();
+    }
+
+    /**
+     * @param features Vlastnosti atomu z pole features.
+     * @param feature Pozice vlastnosti, napriklad HYDROGENS.
+     * @return Hodnotu vlastnosti.
+     */
+    public static int getFeature(long features, int feature) {
+        return (int) (features >>> feature) & 0xFF;
+    }
+
+    /**
+     * Do pole features zapise pocty vodiku a heteroatomu a priznak nasobne vazby. Pouziva jen kompaktni reprezentaci.
+     * U vedlejsiho retezce zustava priznak nasobne vazby i za vazbu na atom, na ktery je retezec navazan.
+     */
+    private void countLigands() {
+        for (int atom = 0; atom < atoms.length; atom++) {
+            long atomFeatures = (long) hydrogens[atom] << HYDROGENS;
+            if (hasMultipleBond[atom])
+                atomFeatures |= 1L << MULTIPLE_BOND;
+            for (int bond = bondOffsets[atom]; bond < bondOffsets[atom + 1]; bond++) {
+                int order = bondOrders[bond];
+                switch (elements[bondTargets[bond]]) {
+                    case 'O' -> atomFeatures += (long) order << OXYGENS;
+                    case 'N' -> atomFeatures += (long) order << NITROGENS;
+                    case 'S' -> atomFeatures += (long) order << SULFURS;
+                }
+            }
+            features[atom] = atomFeatures;
+        }
+    }
+
+    /**
+     * Do pole features doplni funkcni skupiny a pocet uhliku v cyklu navazanych na atom.
+     */
+    private void addStructureFeatures() {
+        for (int atom = 0; atom < atoms.length; atom++) {
+            int carbonsInCycle = 0;
+            for (int bond = bondOffsets[atom]; bond < bondOffsets[atom + 1]; bond++) {
+                int ligand = bondTargets[bond];
+                if (elements[ligand] == 'C' && isPartOfCycle[ligand])
+                    carbonsInCycle += bondOrders[bond];
+            }
+            features[atom] |= (long) carbonsInCycle << CARBONS_IN_CYCLE | (long) numOfSeniorGroups[atom] << SENIOR_GROUPS
+                    | (long) (seniorGroupMasks[atom] & 0xFF) << SENIOR_GROUP_MASK;
+        }
+    }
+
+    /**
+     * Projde atomy navazane na start a sestavi z nich kompaktni reprezentaci molekuly, pokud jeste nebyla sestavena.
+     */
+    synchronized void compact() {
+        if (atoms != null)
+            return;
+        List<Atom> order = new ArrayList<>();
+        Map<Atom, Integer> indexOfAtom = new IdentityHashMap<>();
+        order.add(start);
+        indexOfAtom.put(start, 0);
+        int maxID = start.ID;
+        int numOfBonds = 0;
+        // Prochazime do sirky, atomy ocislujeme v poradi, v jakem je objevime.
+        for (int i = 0; i < order.size(); i++) {
+            for (Atom ligand : order.get(i).ligands) {
+                if (ligand != null && !indexOfAtom.containsKey(ligand)) {
+                    indexOfAtom.put(ligand, order.size());
+                    order.add(ligand);
+                    maxID = Math.max(maxID, ligand.ID);
+                }
+                if (ligand != null)
+                    numOfBonds++;
+            }
+        }
+
+        int size = order.size();
+        allocate(size, numOfBonds, maxID + 1);
+        int bond = 0;
+        for (int i = 0; i < size; i++) {
+            Atom atom = order.get(i);
+            atoms[i] = atom;
+            indices[atom.ID] = i;
+            elements[i] = (byte) atom.symbol;
+            bondOffsets[i] = bond;
+            int numOfH = 0;
+            for (Atom ligand : atom.ligands) {
+                if (ligand == null) {
+                    numOfH++;
+                    continue;
+                }
+                int target = indexOfAtom.get(ligand);
+                // Nasobna vazba zabira vice mist mezi ligandy, v kompaktni reprezentaci je jedna vazba s danou nasobnosti.
+                int existing = findBond(i, target, bond);
+                if (existing == -1) {
+                    bondTargets[bond] = target;
+                    bondOrders[bond] = 1;
+                    bond++;
+                } else {
+                    bondOrders[existing]++;
+                    hasMultipleBond[i] = true;
+                }
+            }
+            hydrogens[i] = (byte) numOfH;
+        }
+        bondOffsets[size] = bond;
+        // Nasobne vazby jsme pri odhadu poctu vazeb pocitali vicekrat.
+        bondTargets = Arrays.copyOf(bondTargets, bond);
+        bondOrders = Arrays.copyOf(bondOrders, bond);
+    }
+
+    /**
+     * Pripravi prazdna pole kompaktni reprezentace.
+     * @param size Pocet atomu.
+     * @param numOfBonds Pocet vazeb, pripadne jeho horni odhad.
+     * @param numOfIDs Pocet moznych ID atomu.
+     */
+    private void allocate(int size, int numOfBonds, int numOfIDs) {
+        atoms = new Atom[size];
+        elements = new byte[size];
+        bondOffsets = new int[size + 1];
+        bondTargets = new int[numOfBonds];
+        bondOrders = new byte[numOfBonds];
+        hydrogens = new byte[size];
+        seniorGroupMasks = new int[size];
+        numOfSeniorGroups = new byte[size];
+        isPartOfCycle = new boolean[size];
+        hasMultipleBond = new boolean[size];
+        features = new long[size];
+        indices = new int[numOfIDs];
+        Arrays.fill(indices, -1);
+        numberOfAtoms = size;
+    }
+
+    /**
+     * Najde vazbu mezi atomem a ligandem mezi jiz zapsanymi vazbami atomu.
+     * @param atom Index atomu.
+     * @param ligand Index ligandu.
+     * @param end Pozice za posledni zapsanou vazbou atomu.
+     * @return Pozici vazby, nebo -1, pokud vazba neexistuje.
+     */
+    private int findBond(int atom, int ligand, int end) {
+        for (int bond = bondOffsets[atom]; bond < end; bond++) {
+            if (bondTargets[bond] == ligand)
+                return bond;
+        }
+        return -1;
+    }
+
+    /**
+     * Vytvori molekulu vedlejsiho retezce, ktery zacina danym atomem a nepokracuje pres atom, na ktery je navazan.
+     * Vazba na tento atom se v nove molekule nahradi vodiky. Informace o cyklech a nasobnych vazbach se prevezmou z teto molekuly.
+     * @param start Index prvniho atomu vedlejsiho retezce.
+     * @param parent Index atomu, na ktery je vedlejsi retezec navazan.
+     * @return Molekulu vedlejsiho retezce.
+     */
+    public Molecule getSideChain(int start, int parent) {
+        int[] newIndices = new int[atoms.length];
+        Arrays.fill(newIndices, -1);
+        int[] order = new int[atoms.length];
+        int size = 0;
+        int numOfBonds = 0;
+        order[size++] = start;
+        newIndices[start] = 0;
+        for (int i = 0; i < size; i++) {
+            int atom = order[i];
+            for (int bond = bondOffsets[atom]; bond < bondOffsets[atom + 1]; bond++) {
+                int ligand = bondTargets[bond];
+                if (atom == start && ligand == parent)
+                    continue;
+                numOfBonds++;
+                if (newIndices[ligand] == -1) {
+                    newIndices[ligand] = size;
+                    order[size++] = ligand;
+                }
+            }
+        }
+
+        Molecule sideChain = new Molecule(atoms[start]);
+        sideChain.allocate(size, numOfBonds, indices.length);
+        // Pri identifikaci struktur vedlejsiho retezce se vazby startu prochazi jen po vazbu na atom, na ktery je navazan.
+        // Funkcni skupiny zbytku vedlejsiho retezce zustavaji zapocitane z puvodni molekuly.
+        sideChain.identifiedStartBonds = 0;
+        while (bondTargets[bondOffsets[start] + sideChain.identifiedStartBonds] != parent)
+            sideChain.identifiedStartBonds++;
+        int newBond = 0;
+        for (int i = 0; i < size; i++) {
+            int atom = order[i];
+            sideChain.atoms[i] = atoms[atom];
+            sideChain.indices[atoms[atom].ID] = i;
+            sideChain.elements[i] = elements[atom];
+            sideChain.hydrogens[i] = hydrogens[atom];
+            sideChain.isPartOfCycle[i] = isPartOfCycle[atom];
+            sideChain.hasMultipleBond[i] = hasMultipleBond[atom];
+            sideChain.seniorGroupMasks[i] = seniorGroupMasks[atom];
+            sideChain.numOfSeniorGroups[i] = numOfSeniorGroups[atom];
+            sideChain.bondOffsets[i] = newBond;
+            for (int bond = bondOffsets[atom]; bond < bondOffsets[atom + 1]; bond++) {
+                int ligand = bondTargets[bond];
+                if (atom == start && ligand == parent) {
+                    sideChain.hydrogens[i] += bondOrders[bond];
+                    continue;
+                }
+                sideChain.bondTargets[newBond] = newIndices[ligand];
+                sideChain.bondOrders[newBond] = bondOrders[bond];
+                newBond++;
+            }
+        }
+        sideChain.bondOffsets[size] = newBond;
+        return sideChain;
+    }
+
+    /**
+     * Zakoduje vedlejsi retezec, ktery je stromem z uhliku bez cyklu, nasobnych vazeb a funkcnich skupin. Atomy se ocisluji ve
+     * stejnem poradi jako v getSideChain a pro kazdy se zapise pocet sousedu a jejich cisla v poradi vazeb. Stejny kod tedy maji
+     * prave ty vedlejsi retezce, z nichz getSideChain vytvori stejnou molekulu, a tedy i stejny nazev.
+     * @param start Index prvniho atomu vedlejsiho retezce.
+     * @param parent Index atomu, na ktery je vedlejsi retezec navazan.
+     * @return Kod vedlejsiho retezce, nebo null, pokud vedlejsi retezec neni nasyceny uhlovodikovy strom.
+     */
+    public String getSideChainSignature(int start, int parent) {
+        int[] newIndices = new int[atoms.length];
+        Arrays.fill(newIndices, -1);
+        int[] order = new int[atoms.length];
+        int size = 0;
+        order[size++] = start;
+        newIndices[start] = 0;
+        StringBuilder signature = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            int atom = order[i];
+            if (elements[atom] != 'C' || isPartOfCycle[atom] || hasMultipleBond[atom] || numOfSeniorGroups[atom] != 0)
+                return null;
+            int degree = bondOffsets[atom + 1] - bondOffsets[atom] - (atom == start ? 1 : 0);
+            signature.append((char) degree);
+            for (int bond = bondOffsets[atom]; bond < bondOffsets[atom + 1]; bond++) {
+                int ligand = bondTargets[bond];
+                if (atom == start && ligand == parent)
+                    continue;
+                if (newIndices[ligand] == -1) {
+                    newIndices[ligand] = size;
+                    order[size++] = ligand;
+                }
+                signature.append((char) newIndices[ligand]);
+            }
+        }
+        // Cisla atomu se musi vejit do znaku.
+        return size - 1 > Character.MAX_VALUE ? null : signature.toString();
+    }
+
+    /**
+     * Zjisti index atomu v kompaktni reprezentaci.
+     * @param atom Atom molekuly.
+     * @return Index atomu, nebo -1, pokud atom do molekuly nepatri.
+     */
+    public int indexOf(Atom atom) {
+        if (atom.ID < 0 || atom.ID >= indices.length)
+            return -1;
+        return indices[atom.ID];
+    }
+
+    /**
+     * Zjisti nasobnost vazby mezi dvema atomy.
+     * @param atom Index atomu.
+     * @param ligand Index druheho atomu.
+     * @return Nasobnost vazby, nebo 0, pokud atomy nejsou navazane.
+     */
+    public int getBondOrder(int atom, int ligand) {
+        for (int bond = bondOffsets[atom]; bond < bondOffsets[atom + 1]; bond++) {
+            if (bondTargets[bond] == ligand)
+                return bondOrders[bond];
+        }
+        return 0;
+    }
+
+    /**
+     * Spocita vazebna mista atomu obsazena atomy daneho prvku. Nasobna vazba se pocita tolikrat, kolik je jeji nasobnost.
+     * @param atom Index atomu.
+     * @param symbol Symbol prvku.
+     * @return Pocet obsazenych vazebnych mist.
+     */
+    public int countBondsTo(int atom, char symbol) {
+        int count = 0;
+        for (int bond = bondOffsets[atom]; bond < bondOffsets[atom + 1]; bond++) {
+            if (elements[bondTargets[bond]] == symbol)
+                count += bondOrders[bond];
+        }
+        return count;
+    }
+
+    /**
+     * Zjisti, zda atom nese danou funkcni skupinu.
+     * @param atom Index atomu.
+     * @param group Funkcni skupina.
+     * @return True, pokud ji nese, false, pokud ne.
+     */
+    public boolean hasSeniorGroup(int atom, String group) {
+        int index = Nomenclature.getIndex(Nomenclature.SENIOR_GROUPS, group);
+        return index != -1 && (seniorGroupMasks[atom] & (1 << index)) != 0;
     }
 
     /**
@@ -44,12 +401,14 @@ public class Molecule {
     }
 
     /**
-     * Do mapy atomu a funkncich skupin pridame atom s danou fs.
-     * @param atom Pridavany atom.
-     * @param group Pridavana funkcni skupina.
+     * Prida atomu funkcni skupinu a atom pridame do mapy atomu a funkncich skupin.
+     * @param atom Index atomu.
+     * @param group Index funkcni skupiny v Nomenclature.SENIOR_GROUPS.
      */
-    private void addToAtomsWithSeniorGroups(Atom atom, String group) {
-        atomsWithSeniorGroups.computeIfAbsent(group, k -> new ArrayList<>()).add(atom);
+    private void addSeniorGroup(int atom, int group) {
+        seniorGroupMasks[atom] |= 1 << group;
+        numOfSeniorGroups[atom]++;
+        atomsWithSeniorGroups.computeIfAbsent(Nomenclature.SENIOR_GROUPS[group], k -> new ArrayList<>()).add(atoms[atom]);
     }
 
     /**
@@ -68,159 +427,133 @@ public class Molecule {
     }
 
     /**
-     * Projde molekulu a poznamena informace o funkncich skupinach a nasobnych vazbach.
-     * @param atom Zrovna zkoumany atom.
-     * @param visited Mapa, s informacemi, ktere atomy jsme jiz navstivili.
+     * Projde molekulu do hloubky a poznamena informace o funkncich skupinach a nasobnych vazbach. Misto rekurze se pouziva
+     * vlastni zasobnik, aby slo zpracovat i velmi dlouhe retezce.
      * @throws InvalidLigandConfigurationException
      */
-    private void identifySeniorGroupsAndMultipleBonds(Atom atom, Map<Integer, Boolean> visited) throws InvalidLigandConfigurationException {
-        visited.put(atom.ID,true);
-
-        int atomNumOfH = atom.countHydrogens();
-        boolean hasOxoGroup = false;
-        List<Integer> bondedCarbonsID = new ArrayList<>();
-        int i = 0;
-        while (i < atom.ligands.length) {
-            Atom ligand = atom.ligands[i];
-            // "null" znaci navazany vodik. Pokud narazime na vodik, tak zbytek seznamu ligandu za nim jsou take vodiky.
-            if (ligand == null)
-                break;
-
-            int ligandNumOfH = ligand.countHydrogens();
-            int ligandNumOfO = ligand.countAtoms('O');
-            switch (ligand.symbol) {
+    private void identifySeniorGroupsAndMultipleBonds() throws InvalidLigandConfigurationException {
+        int size = atoms.length;
+        boolean[] visited = new boolean[size];
+        boolean[] hasOxoGroup = new boolean[size];
+        int[] numOfOH = new int[size];
+        boolean[] isInAtomsWithMultipleBonds = new boolean[size];
+        // Zasobnik rozpracovanych atomu a pozice vazby, kterou u kazdeho z nich prave zkoumame.
+        int[] stack = new int[size];
+        int[] positions = new int[size];
+        int depth = 0;
+        stack[depth] = 0;
+        positions[depth++] = bondOffsets[0];
+        visited[0] = true;
+
+        while (depth > 0) {
+            int atom = stack[depth - 1];
+            int bond = positions[depth - 1];
+            int end = atom == 0 && identifiedStartBonds != -1 ? bondOffsets[0] + identifiedStartBonds : bondOffsets[atom + 1];
+            if (bond == end) {
+                depth--;
+                identifyOxoGroup(atom, hasOxoGroup[atom], numOfOH[atom]);
+                continue;
+            }
+            int ligand = bondTargets[bond];
+            int ligandNumOfH = hydrogens[ligand];
+            switch (elements[ligand]) {
                 case 'C':
-                    // Ukladame ID navazanych uhliku, a pokud narazime na jiz ulozene ID, tak se jedna o nasobnou vazbu.
-                    if (bondedCarbonsID.contains(ligand.ID) && !atomsWithMultipleBonds.contains(atom))
-                        atomsWithMultipleBonds.add(atom);
-                    else
-                        bondedCarbonsID.add(ligand.ID);
-                    // Dale prochazime nenavstivene uhliky.
-                    if (!visited.getOrDefault(ligand.ID, false))
-                        identifySeniorGroupsAndMultipleBonds(ligand, visited);
+                    // Dale prochazime nenavstivene uhliky. Vazba se dokonci az po navratu z ligandu.
+                    if (!visited[ligand]) {
+                        visited[ligand] = true;
+                        stack[depth] = ligand;
+                        positions[depth++] = bondOffsets[ligand];
+                        continue;
+                    }
+                    if (bondOrders[bond] > 1 && !isInAtomsWithMultipleBonds[atom]) {
+                        isInAtomsWithMultipleBonds[atom] = true;
+                        atomsWithMultipleBonds.add(atoms[atom]);
+                    }
                     break;
                 case 'O':
                     if (ligandNumOfH == 1) {
-                        addToAtomsWithSeniorGroups(atom, "-OH");
-                        atom.incrementNumOfSeniorGroup("-OH", 1);
+                        addSeniorGroup(atom, OH);
+                        numOfOH[atom]++;
                     } else if (ligandNumOfH == 0) {
-                        hasOxoGroup = true;
-                        i++;
+                        hasOxoGroup[atom] = true;
                     } else {
-                        throw new InvalidLigandConfigurationException(atom, 'O');
+                        throw new InvalidLigandConfigurationException(atoms[atom], 'O');
                     }
                     break;
                 case 'S':
-                    if (ligandNumOfH > 0 && ligandNumOfO == 0) {
-                        addToAtomsWithSeniorGroups(atom, "-SH");
-                        atom.incrementNumOfSeniorGroup("-SH", 1);
-                    } else if (ligandNumOfO == 3){
-                        addToAtomsWithSeniorGroups(atom, "-SO3H");
-                        atom.incrementNumOfSeniorGroup("-SO3H", 1);
-                    } else {
-                        throw new InvalidLigandConfigurationException(atom, 'S');
+                    // Kazde vazebne misto obsazene sirou se pocita jako jedna skupina.
+                    for (int i = 0; i < bondOrders[bond]; i++) {
+                        int ligandNumOfO = getFeature(features[ligand], OXYGENS);
+                        if (ligandNumOfH > 0 && ligandNumOfO == 0) {
+                            addSeniorGroup(atom, SH);
+                        } else if (ligandNumOfO == 3) {
+                            addSeniorGroup(atom, SO3H);
+                        } else {
+                            throw new InvalidLigandConfigurationException(atoms[atom], 'S');
+                        }
                     }
                     break;
                 case 'N':
-                    if (ligandNumOfH == 2) {
-                        addToAtomsWithSeniorGroups(atom, "-NH2");
-                        atom.incrementNumOfSeniorGroup("-NH2", 1);
-                    } else if (ligandNumOfO == 2) {
-                        addToAtomsWithSeniorGroups(atom, "-NO2");
-                        atom.incrementNumOfSeniorGroup("-NO2", 1);
-                    } else {
-                        throw new InvalidLigandConfigurationException(atom, 'N');
+                    for (int i = 0; i < bondOrders[bond]; i++) {
+                        if (ligandNumOfH == 2) {
+                            addSeniorGroup(atom, NH2);
+                        } else if (getFeature(features[ligand], OXYGENS) == 2) {
+                            addSeniorGroup(atom, NO2);
+                        } else {
+                            throw new InvalidLigandConfigurationException(atoms[atom], 'N');
+                        }
                     }
                     break;
             }
-            i++;
+            positions[depth - 1]++;
         }
+    }
+
+    /**
+     * Podle kysliku navazanych na uhlik urci, zda nese -COOH, -CHO nebo -CO.
+     * @param atom Index uhliku.
+     * @param hasOxoGroup True, pokud je na uhliku navazan =O.
+     * @param numOfOH Pocet -OH na uhliku.
+     */
+    private void identifyOxoGroup(int atom, boolean hasOxoGroup, int numOfOH) {
         if (hasOxoGroup) {
-            int numOfOH = atom.numOfSeniorGroupsMap.getOrDefault("-OH", 0);
             if (numOfOH > 0) {
                 // -COOH se sklada z -OH a =O. Pokud je na uhliku =O a -OH, zvysime pocet -COOH o 1 a -OH snizime o 1.
-                atom.incrementNumOfSeniorGroup("-COOH", 1);
-                atom.incrementNumOfSeniorGroup("-OH", -1);
-                addToAtomsWithSeniorGroups(atom, "-COOH");
+                seniorGroupMasks[atom] |= 1 << COOH;
+                atomsWithSeniorGroups.computeIfAbsent("-COOH", k -> new ArrayList<>()).add(atoms[atom]);
 
                 // Pokud jsme takto zuzitkovali vsechny -OH, odstranime polozku z mapy.
-                if (atom.numOfSeniorGroupsMap.getOrDefault("-OH", 0) == 0)
-                    removeFromAtomsWithSeniorGroups(atom, "-OH");
-            } else if (atomNumOfH > 0) {
+                if (numOfOH == 1) {
+                    seniorGroupMasks[atom] &= ~(1 << OH);
+                    removeFromAtomsWithSeniorGroups(atoms[atom], "-OH");
+                }
+            } else if (hydrogens[atom] > 0) {
                 // Pokud nema -OH, ale ma nejake vodiky, jedna se o aldehyd.
-                atom.incrementNumOfSeniorGroup("-CHO", 1);
-                addToAtomsWithSeniorGroups(atom, "-CHO");
+                addSeniorGroup(atom, CHO);
             } else {
                 // Jinak je to keton.
-                atom.incrementNumOfSeniorGroup("-CO", 1);
-                addToAtomsWithSeniorGroups(atom, "-CO");
+                addSeniorGroup(atom, CO);
             }
         }
     }
 
     /**
-     * Nalezenim cesty mezy zacatky a konci cyklu oznacime vsechny uhliky v danem cyklu.
+     * Najde nejmensi sadu nejmensich cyklu a oznaci uhliky, ktere v nekterem cyklu lezi. Zacatkem cyklu je jeho prvni objeveny atom.
      */
-    private void findPathBetweenTwoAtoms() {
-        List<Atom> path;
-        for (Atom[] atoms : startsAndEndsOfCycles) {
-            Atom start = atoms[0]; Atom end = atoms[1];
-            path = new ArrayList<>();
-            path.add(start);
-            //findPathBetweenTwoAtoms(start, end, new HashMap<>(), path);
-            Map<Integer, Boolean> visited = new HashMap<>();
-            visited.put(end.ID, true);
-            findPathBetweenTwoAtoms(start, start, end, visited, path);
-            path.add(end);
-
-            if (path.size() > maxLengthOfCycle) {
-                maxLengthOfCycle = path.size();
+    private void identifyCycles() {
+        rings = new RingPerception(this);
+        System.arraycopy(rings.isInRing, 0, isPartOfCycle, 0, atoms.length);
+        for (int[] ring : rings.smallestRings) {
+            if (ring.length > maxLengthOfCycle) {
+                maxLengthOfCycle = ring.length;
                 startsOfTheLongestCycles.clear();
-                startsOfTheLongestCycles.add(start);
-            } else if (path.size() == maxLengthOfCycle) {
-                startsOfTheLongestCycles.add(start);
-            }
-
-            for (Atom atom : path) {
-                atom.isPartOfCycle = true;
+                startsOfTheLongestCycles.add(atoms[ring[0]]);
+            } else if (ring.length == maxLengthOfCycle) {
+                startsOfTheLongestCycles.add(atoms[ring[0]]);
             }
         }
     }
 
-    /**
-     * Mezi zadanymi 2 atomy nalezne cestu. Pro oznaceny atomu v cyklu.
-     * @param current Prave zkoumany atom.
-     * @param end Konec cesty.
-     * @param visited Mapa, s informacemi, ktere atomy jsme jiz navstivili.
-     * @param path Tvorena cesta.
-     * @return Cestu mezi 2 zadanymi atomy.
-     */
-    private boolean findPathBetweenTwoAtoms(Atom current, Atom start, Atom end, Map<Integer, Boolean> visited, List<Atom> path) {
-        //if (Objects.equals(current, end))
-          //  return true;
-
-        if (!Objects.equals(current, start)) {
-            for (Atom ligand : current.ligands) {
-                if (Objects.equals(end, ligand))
-                    return true;
-            }
-        }
-
-        visited.put(current.ID, true);
-
-        for (Atom ligand : current.ligands) {
-            //if (ligand != null && ligand.symbol == 'C' && !visited.getOrDefault(ligand.ID, false) && ligand.ID > current.ID) {
-            if (ligand != null && ligand.symbol == 'C' && !visited.getOrDefault(ligand.ID, false) &&!Objects.equals(end, ligand)) {
-                path.add(ligand);
-
-                if (findPathBetweenTwoAtoms(ligand, start, end, visited, path))
-                    return true;
-                path.removeLast();
-            }
-        }
-        return false;
-    }
-
     public static class InvalidLigandConfigurationException extends Exception {
         public InvalidLigandConfigurationException(Atom atom, char ligandSymbol) {
             super("Neplatna funkcni skupina na atomu " + atom.toString() + " zacinajici na " + ligandSymbol + ".");
@@ -232,41 +565,51 @@ public class Molecule {
      * @return Retezcova reprezentace molekuly.
      */
     public String DFS() {
-        return DFS(start, new HashMap<>(), new StringBuilder()).toString();
-    }
-    private StringBuilder DFS(Atom atom, Map<Integer, Boolean> visited, StringBuilder output) {
-        visited.put(atom.ID, true);
-        output.append(atom.symbol);
-        int numOfH = atom.countHydrogens();
-        if (numOfH > 0)
-            output.append("H").append(numOfH);
+        StringBuilder output = new StringBuilder();
+        BitSet visited = new BitSet();
+        // Zasobnik rozpracovanych atomu a index ligandu, ktery u kazdeho z nich prave zkoumame.
+        Atom[] stack = new Atom[16];
+        int[] positions = new int[16];
+        int depth = 0;
+        stack[depth] = start;
+        positions[depth++] = 0;
+        appendAtom(start, visited, output);
 
-        for (Atom ligand : atom.ligands) {
-            if (ligand != null) {
-                if (!visited.getOrDefault(ligand.ID, false)) {
-                    output.append("(");
-                    output = new StringBuilder(DFS(ligand, visited, output));
+        while (depth > 0) {
+            Atom atom = stack[depth - 1];
+            if (positions[depth - 1] == atom.ligands.length) {
+                depth--;
+                if (depth > 0)
                     output.append(")");
+                continue;
+            }
+            Atom ligand = atom.ligands[positions[depth - 1]++];
+            if (ligand != null && !visited.get(ligand.ID)) {
+                output.append("(");
+                appendAtom(ligand, visited, output);
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * depth);
+                    positions = Arrays.copyOf(positions, 2 * depth);
                 }
+                stack[depth] = ligand;
+                positions[depth++] = 0;
             }
         }
-        return output;
-    }
-    public void findStartsAndEndsOfCycles() {
-        findStartsAndEndsOfCycles(new boolean[numberOfAtoms], start, null);
+        return output.toString();
     }
 
-    private void findStartsAndEndsOfCycles(boolean[] visited, Atom atom, Atom parent) {
-        visited[atom.ID] = true;
-        for (Atom ligand : new HashSet<>(Arrays.asList(atom.ligands))) {
-            if (ligand != null) {
-                if (!visited[ligand.ID]) {
-                    findStartsAndEndsOfCycles(visited, ligand, atom);
-                } else if (!Objects.equals(ligand, parent)) {
-                    startsAndEndsOfCycles.add(new Atom[]{ligand, atom});
-                }
-            }
-        }
+    /**
+     * Oznaci atom jako navstiveny a vypise jeho symbol s poctem vodiku.
+     * @param atom Vypisovany atom.
+     * @param visited Navstivene atomy podle ID.
+     * @param output Doposavad vytvoreny retezec.
+     */
+    private static void appendAtom(Atom atom, BitSet visited, StringBuilder output) {
+        visited.set(atom.ID);
+        output.append(atom.symbol);
+        int numOfH = atom.countHydrogens();
+        if (numOfH > 0)
+            output.append("H").append(numOfH);
     }
 }
 
@@ -0,0 +1,320 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rozmisteni atomu molekuly v rovine pro jeji nakresleni. Atomy se rozmistuji pruchodem do sirky od startu. Retezce se
+ * kresli cik-cak s uhlem vazeb 120 stupnu, u trojne vazby a dvou dvojnych vazeb rovne. Cykly nalezene v uhlikove kostre se
+ * kresli jako pravidelne mnohouhelniky, kondenzovany cyklus se prilozi ke spolecne vazbe z odvracene strany. Substituenty
+ * se rozlozi rovnomerne do nejvetsi volne vysece kolem atomu. Kazdy atom se umisti jen jednou, takze cas roste linearne
+ * s velikosti molekuly. Prekryvy vzdalenych casti molekuly se neresi.
+ */
+public class MoleculeLayout {
+    public final double[] x; // Souradnice atomu podle indexu v kompaktni reprezentaci, v delkach vazby
+    public final double[] y;
+
+    private final Molecule molecule;
+    private final List<int[]> rings;
+    private final List<List<Integer>> ringsOfAtom; // Indexy cyklu, ve kterych atom lezi
+    private final boolean[] isRingDone;
+    private final boolean[] isPlaced;
+    private final int[] turns; // Smer zatoceni dalsi vazby retezce, +1 nebo -1
+    private final int[] queue;
+    private int queueLength = 0;
+
+    /**
+     * Rozmisti atomy molekuly. Start molekuly lezi v pocatku.
+     * @param molecule Molekula.
+     */
+    public MoleculeLayout(Molecule molecule) {
+        this.molecule = molecule;
+        molecule.compact();
+        int size = molecule.atoms.length;
+        x = new double[size];
+        y = new double[size];
+        rings = new RingPerception(molecule).smallestRings;
+        ringsOfAtom = new ArrayList<>(size);
+        for (int atom = 0; atom < size; atom++)
+            ringsOfAtom.add(List.of());
+        for (int ring = 0; ring < rings.size(); ring++) {
+            for (int atom : rings.get(ring)) {
+                if (ringsOfAtom.get(atom).isEmpty())
+                    ringsOfAtom.set(atom, new ArrayList<>(2));
+                ringsOfAtom.get(atom).add(ring);
+            }
+        }
+        isRingDone = new boolean[rings.size()];
+        isPlaced = new boolean[size];
+        turns = new int[size];
+        Arrays.fill(turns, 1);
+        queue = new int[size];
+
+        place(0, 0, 0);
+        for (int i = 0; i < queueLength; i++) {
+            int atom = queue[i];
+            for (int ring : ringsOfAtom.get(atom)) {
+                if (!isRingDone[ring])
+                    placeRing(ring, atom);
+            }
+            placeLigands(atom);
+        }
+    }
+
+    /**
+     * Umisti cyklus, ve kterem uz lezi umisteny atom. Pokud je umisten i sousedni atom cyklu, jde o kondenzovany cyklus.
+     * U premostenych cyklu s jinymi umistenymi atomy se neumistene atomy rozlozi na spojnici umistenych atomu, mezi ktere
+     * v cyklu patri.
+     * @param ring Index cyklu.
+     * @param atom Umisteny atom cyklu.
+     */
+    private void placeRing(int ring, int atom) {
+        isRingDone[ring] = true;
+        int[] members = rings.get(ring);
+        int length = members.length;
+        int position = 0;
+        int numOfPlaced = 0;
+        for (int i = 0; i < length; i++) {
+            if (members[i] == atom)
+                position = i;
+            if (isPlaced[members[i]])
+                numOfPlaced++;
+        }
+        int next = members[(position + 1) % length];
+        int previous = members[(position + length - 1) % length];
+        double radius = 0.5 / Math.sin(Math.PI / length);
+        double centerX, centerY;
+        int direction = 1; // Smer, kterym se v cyklu pokracuje od atomu
+        double step = 2 * Math.PI / length;
+
+        if (numOfPlaced == 1) {
+            // Stred cyklu lezi ve smeru nejvetsi volne vysece kolem atomu.
+            double angle = getFreeAngle(atom);
+            centerX = x[atom] + radius * Math.cos(angle);
+            centerY = y[atom] + radius * Math.sin(angle);
+        } else if (numOfPlaced == 2 && (isPlaced[next] || isPlaced[previous])) {
+            int other = isPlaced[next] ? next : previous;
+            direction = other == next ? 1 : -1;
+            // Stred lezi na ose spolecne vazby, na strane odvracene od ostatnich umistenych sousedu.
+            double middleX = (x[atom] + x[other]) / 2, middleY = (y[atom] + y[other]) / 2;
+            double normalX = -(y[other] - y[atom]), normalY = x[other] - x[atom];
+            double side = 0;
+            for (int end : new int[]{atom, other}) {
+                for (int bond = molecule.bondOffsets[end]; bond < molecule.bondOffsets[end + 1]; bond++) {
+                    int ligand = molecule.bondTargets[bond];
+                    if (isPlaced[ligand] && ligand != atom && ligand != other)
+                        side += (x[ligand] - middleX) * normalX + (y[ligand] - middleY) * normalY;
+                }
+            }
+            double apothem = radius * Math.cos(Math.PI / length);
+            double sign = side > 0 ? -1 : 1;
+            centerX = middleX + sign * apothem * normalX;
+            centerY = middleY + sign * apothem * normalY;
+            // Krok mezi atomy volime tak, aby druhy atom spolecne vazby lezel na svem miste.
+            double angleOfAtom = Math.atan2(y[atom] - centerY, x[atom] - centerX);
+            double angleOfOther = Math.atan2(y[other] - centerY, x[other] - centerX);
+            step = Math.IEEEremainder(angleOfOther - angleOfAtom, 2 * Math.PI) > 0 ? step : -step;
+        } else {
+            placeBridges(members);
+            return;
+        }
+
+        double angle = Math.atan2(y[atom] - centerY, x[atom] - centerX);
+        for (int i = 1; i < length; i++) {
+            int member = members[Math.floorMod(position + direction * i, length)];
+            if (!isPlaced[member])
+                place(member, centerX + radius * Math.cos(angle + step * i), centerY + radius * Math.sin(angle + step * i));
+        }
+    }
+
+    /**
+     * Kazdy usek neumistenych atomu cyklu rozlozi mezi umistene atomy pred nim a za nim. Vazby useku maji jednotkovou delku
+     * a lezi na oblouku vyklenutem na tu stranu, kde zustane dal od jiz umistenych atomu. Pokud jsou krajni atomy prilis
+     * daleko, atomy se rozlozi na jejich spojnici.
+     * @param members Atomy cyklu, alespon dva umistene.
+     */
+    private void placeBridges(int[] members) {
+        int length = members.length;
+        int first = 0;
+        while (!isPlaced[members[first]])
+            first++;
+        int from = first;
+        do {
+            int to = (from + 1) % length;
+            while (!isPlaced[members[to]])
+                to = (to + 1) % length;
+            int bonds = Math.floorMod(to - from, length);
+            if (bonds > 1) {
+                double[][] left = getArc(members[from], members[to], bonds, 1);
+                double[][] right = getArc(members[from], members[to], bonds, -1);
+                double[][] arc = getClearance(left) >= getClearance(right) ? left : right;
+                for (int i = 1; i < bonds; i++)
+                    place(members[(from + i) % length], arc[0][i - 1], arc[1][i - 1]);
+            }
+            from = to;
+        } while (from != first);
+    }
+
+    /**
+     * Spocita souradnice vnitrnich atomu oblouku mezi dvema umistenymi atomy.
+     * @param start Umisteny atom na zacatku oblouku.
+     * @param end Umisteny atom na konci oblouku.
+     * @param bonds Pocet vazeb oblouku.
+     * @param side Strana vyklenuti, 1 vlevo, -1 vpravo od smeru ze zacatku na konec.
+     * @return Souradnice x a y vnitrnich atomu.
+     */
+    private double[][] getArc(int start, int end, int bonds, int side) {
+        double chordX = x[end] - x[start], chordY = y[end] - y[start];
+        double chord = Math.hypot(chordX, chordY);
+        double angle = Math.atan2(chordY, chordX);
+        double turn = chord < bonds ? getArcTurn(bonds, chord) : 0;
+        double bondLength = chord < bonds ? 1 : chord / bonds;
+        double[][] arc = new double[2][bonds - 1];
+        double atomX = x[start], atomY = y[start];
+        for (int i = 0; i < bonds - 1; i++) {
+            double direction = angle + side * (bonds - 1 - 2 * i) * turn;
+            atomX += bondLength * Math.cos(direction);
+            atomY += bondLength * Math.sin(direction);
+            arc[0][i] = atomX;
+            arc[1][i] = atomY;
+        }
+        return arc;
+    }
+
+    /**
+     * @param arc Souradnice atomu oblouku.
+     * @return Nejmensi vzdalenost atomu oblouku od umistenych atomu.
+     */
+    private double getClearance(double[][] arc) {
+        double clearance = Double.MAX_VALUE;
+        for (int i = 0; i < queueLength; i++) {
+            for (int j = 0; j < arc[0].length; j++)
+                clearance = Math.min(clearance, Math.hypot(x[queue[i]] - arc[0][j], y[queue[i]] - arc[1][j]));
+        }
+        return clearance;
+    }
+
+    /**
+     * Najde polovinu uhlu, o ktery se zatoci kazda vazba oblouku z jednotkovych vazeb, aby oblouk spojil body v dane vzdalenosti.
+     * Pro polovinu uhlu f plati sin(bonds * f) / sin(f) = chord, funkce na intervalu (0, pi / bonds) klesa.
+     * @param bonds Pocet vazeb oblouku.
+     * @param chord Vzdalenost krajnich bodu, mensi nez pocet vazeb.
+     * @return Polovina uhlu zatoceni.
+     */
+    private static double getArcTurn(int bonds, double chord) {
+        double low = 0, high = Math.PI / bonds;
+        for (int i = 0; i < 50; i++) {
+            double middle = (low + high) / 2;
+            if (Math.sin(bonds * middle) / Math.sin(middle) > chord)
+                low = middle;
+            else
+                high = middle;
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * Umisti neumistene ligandy atomu. Jediny dalsi atom retezce navaze cik-cak, vice ligandu rozlozi do nejvetsi volne
+     * vysece.
+     * @param atom Umisteny atom.
+     */
+    private void placeLigands(int atom) {
+        int numOfNew = 0;
+        int numOfPlaced = 0;
+        int parent = -1;
+        for (int bond = molecule.bondOffsets[atom]; bond < molecule.bondOffsets[atom + 1]; bond++) {
+            int ligand = molecule.bondTargets[bond];
+            if (isPlaced[ligand]) {
+                numOfPlaced++;
+                parent = ligand;
+            } else {
+                numOfNew++;
+            }
+        }
+        if (numOfNew == 0)
+            return;
+
+        double start, step;
+        if (numOfPlaced == 1 && numOfNew == 1) {
+            double incoming = Math.atan2(y[atom] - y[parent], x[atom] - x[parent]);
+            start = isLinear(atom) ? incoming : incoming + turns[atom] * Math.PI / 3;
+            step = 0;
+        } else if (numOfPlaced == 0) {
+            step = 2 * Math.PI / numOfNew;
+            start = -Math.PI / 6;
+        } else {
+            double[] gap = getLargestGap(atom);
+            step = gap[1] / (numOfNew + 1);
+            start = gap[0] + step;
+        }
+
+        int i = 0;
+        for (int bond = molecule.bondOffsets[atom]; bond < molecule.bondOffsets[atom + 1]; bond++) {
+            int ligand = molecule.bondTargets[bond];
+            if (isPlaced[ligand])
+                continue;
+            double angle = start + step * i++;
+            place(ligand, x[atom] + Math.cos(angle), y[atom] + Math.sin(angle));
+            turns[ligand] = -turns[atom];
+        }
+    }
+
+    /**
+     * @param atom Atom.
+     * @return True, pokud vazby atomu maji lezet na primce, tedy ma trojnou vazbu nebo dve dvojne vazby.
+     */
+    private boolean isLinear(int atom) {
+        int numOfDouble = 0;
+        for (int bond = molecule.bondOffsets[atom]; bond < molecule.bondOffsets[atom + 1]; bond++) {
+            if (molecule.bondOrders[bond] == 3)
+                return true;
+            if (molecule.bondOrders[bond] == 2)
+                numOfDouble++;
+        }
+        return numOfDouble >= 2;
+    }
+
+    /**
+     * @param atom Umisteny atom.
+     * @return Uhel osy nejvetsi volne vysece kolem atomu.
+     */
+    private double getFreeAngle(int atom) {
+        double[] gap = getLargestGap(atom);
+        return gap[0] + gap[1] / 2;
+    }
+
+    /**
+     * Najde nejvetsi vysec kolem atomu, ve ktere nelezi zadna vazba na umisteny ligand.
+     * @param atom Umisteny atom.
+     * @return Uhel zacatku vysece a jeji velikost. Bez umistenych ligandu cely kruh od nuly.
+     */
+    private double[] getLargestGap(int atom) {
+        double[] angles = new double[molecule.bondOffsets[atom + 1] - molecule.bondOffsets[atom]];
+        int count = 0;
+        for (int bond = molecule.bondOffsets[atom]; bond < molecule.bondOffsets[atom + 1]; bond++) {
+            int ligand = molecule.bondTargets[bond];
+            if (isPlaced[ligand])
+                angles[count++] = Math.atan2(y[ligand] - y[atom], x[ligand] - x[atom]);
+        }
+        if (count == 0)
+            return new double[]{0, 2 * Math.PI};
+        Arrays.sort(angles, 0, count);
+        double start = angles[count - 1];
+        double largest = angles[0] + 2 * Math.PI - angles[count - 1];
+        for (int i = 1; i < count; i++) {
+            if (angles[i] - angles[i - 1] > largest) {
+                start = angles[i - 1];
+                largest = angles[i] - angles[i - 1];
+            }
+        }
+        return new double[]{start, largest};
+    }
+
+    private void place(int atom, double atomX, double atomY) {
+        x[atom] = atomX;
+        y[atom] = atomY;
+        isPlaced[atom] = true;
+        queue[queueLength++] = atom;
+    }
+}
@@ -0,0 +1,140 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Vyrovnavaci pamet nazvu molekul, ktera odstranuje opakovane pojmenovani stejnych vstupu. Klicem je presny zapis SMILES,
+ * pri nalezeni v pameti se molekula nenacita ani nepojmenovava.
+ * Nazev vraceny z pameti je vzdy stejny jako nazev z Nomenclature.getName pro tentyz zapis. Ruzne zapisy stejne molekuly se
+ * nesdili, protoze pojmenovani zavisi na poradi atomu v zapisu a ruzne zapisy mohou dostat ruzne nazvy. Pri prekroceni poctu
+ * polozek nebo odhadu obsazene pameti se odstrani nejdele nepouzite polozky.
+ */
+public class NameCache {
+    // Odhad pameti jedne polozky bez znaku retezcu: polozka mapy a dva objekty retezcu s poli.
+    private static final int ENTRY_OVERHEAD = 120;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, String> names = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxEntries Maximalni pocet ulozenych nazvu.
+     * @param maxBytes Maximalni odhad pameti obsazene ulozenymi nazvy v bajtech.
+     */
+    public NameCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1)
+            throw new IllegalArgumentException("Velikost vyrovnavaci pameti musi byt kladna.");
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Vrati jmeno molekuly zadane v SMILES formatu.
+     * @param smiles Retezec ve SMILES formatu.
+     * @return Nazev zadane molekuly.
+     * @throws SMILESParser.InvalidSmilesException
+     * @throws Atom.LigancyExceededException
+     * @throws Molecule.InvalidLigandConfigurationException
+     */
+    public String getName(CharSequence smiles) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException, Molecule.InvalidLigandConfigurationException {
+        String key = smiles.toString();
+        String name = get(key);
+        if (name == null) {
+            name = Nomenclature.getName(key);
+            put(key, name);
+        }
+        return name;
+    }
+
+    /**
+     * Vrati jmeno jiz nactene molekuly. Pri nalezeni v pameti se molekula nepouzije.
+     * @param smiles Retezec ve SMILES formatu, ze ktereho byla molekula nactena.
+     * @param molecule Nactena molekula, na ktere jeste nebyly identifikovany struktury.
+     * @return Nazev molekuly.
+     * @throws SMILESParser.InvalidSmilesException
+     * @throws Atom.LigancyExceededException
+     * @throws Molecule.InvalidLigandConfigurationException
+     */
+    public String getName(String smiles, Molecule molecule) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException, Molecule.InvalidLigandConfigurationException {
+        String name = get(smiles);
+        if (name == null) {
+            name = Nomenclature.getName(molecule);
+            put(smiles, name);
+        }
+        return name;
+    }
+
+    /**
+     * Najde nazev v pameti a zapocita zasah nebo minuti.
+     * @param smiles SMILES retezec.
+     * @return Nazev, nebo null, pokud v pameti neni.
+     */
+    private synchronized String get(String smiles) {
+        String name = names.get(smiles);
+        if (name != null)
+            hits++;
+        else
+            misses++;
+        return name;
+    }
+
+    /**
+     * Ulozi nazev a odstrani nejdele nepouzite polozky, dokud je prekrocen limit.
+     * @param smiles SMILES retezec.
+     * @param name Nazev molekuly.
+     */
+    private synchronized void put(String smiles, String name) {
+        String previous = names.put(smiles, name);
+        if (previous != null)
+            bytes -= getSize(smiles, previous);
+        bytes += getSize(smiles, name);
+        var iterator = names.entrySet().iterator();
+        while (names.size() > maxEntries || (bytes > maxBytes && !names.isEmpty())) {
+            Map.Entry<String, String> eldest = iterator.next();
+            bytes -= getSize(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Odhadne pamet obsazenou jednou polozkou.
+     * @param smiles Klic polozky.
+     * @param name Nazev molekuly.
+     * @return Odhad v bajtech.
+     */
+    private static long getSize(String smiles, String name) {
+        return ENTRY_OVERHEAD + smiles.length() + name.length();
+    }
+
+    /**
+     * @return Pocet dotazu, ktere byly nalezeny v pameti.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Pocet dotazu, ktere v pameti nebyly a molekula se musela pojmenovat.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Pocet ulozenych nazvu.
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+
+    /**
+     * @return Odhad pameti obsazene ulozenymi nazvy v bajtech.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+}
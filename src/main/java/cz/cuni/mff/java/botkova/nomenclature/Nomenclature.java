@@ -1,29 +1,28 @@
 package cz.cuni.mff.java.botkova.nomenclature;
 
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 /**
  * Trida slouzici k vytvoreni nazvu molekuly.
  */
 public class Nomenclature {
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 512;
+    private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private static volatile Metrics metrics = Metrics.NONE;
+    // Nazvy alkylovych vedlejsich retezcu podle kodu z Molecule.getSideChainSignature, sdilene vsemi pojmenovanimi. Cte se
+    // bez zamku, po dosazeni maximalniho poctu se cela vyprazdni. Dlouhe kody se neukladaji, aby byla omezena i velikost.
+    private static final int MAX_SUBSTITUENT_NAMES = 1 << 16;
+    private static final int MAX_SIGNATURE_LENGTH = 256;
+    private static final Map<String, String> substituentNames = new ConcurrentHashMap<>();
+    private static volatile boolean substituentCaching = true;
     public static final String[] SENIOR_GROUPS = {"-COOH", "-SO3H", "-CHO", "-CO", "-OH", "-SH", "-NH2", "-NO2"};
     private static final String[] SENIOR_GROUP_SUFFIXES = { "ova kyselina", "sulfonova kyselina", "al", "on", "ol", "thiol", "amin", "" };
     private static final String[] SENIOR_GROUP_PREFIXES = { "karboxy", "sulfo", "oxo", "oxo", "hydroxy", "sulfanyl", "amino", "nitro" };
     public static final  String[] MULTIPLICITY = {"", "di", "tri", "tetra", "penta"};
-    private final Molecule molecule;
-    private final Chain chain;
-    private final int length;
-
-    private final List<Integer> locantsOfMostSeniorGroup = new ArrayList<>();
-    private final List<Integer> locantsOfDoubleBonds = new ArrayList<>();
-    private final List<Integer> locantsOfTripleBonds = new ArrayList<>();
-    private final Map<String, List<Integer>> locantsOfSeniorGroups = new HashMap<>();
-    private final Map<Integer, List<Atom>> locantsOfSideChainStarts = new HashMap<>();
-    private final Map<String, List<Integer>> locantsOfSideChainNames = new HashMap<>();
-    public String name;
-
-    String[] alkanePrefixes = {
+    // Korenove nazvy retezcu podle poctu uhliku, sdilene vsemi pojmenovanimi.
+    private static final String[] ALKANE_PREFIXES = {
             "meth", "eth", "prop", "but", "pent", "hex", "hept", "okt", "non", "dek",
             "undek", "dodek", "tridek", "tetradek", "pentadek", "hexadek", "heptadek",
             "oktadek", "nonadek", "eikos", "heneikos", "dokos", "trikos", "tetrakos",
@@ -43,11 +42,23 @@ public class Nomenclature {
             "henenneaconta", "donenneaconta", "trienneaconta", "tetraenneaconta", "pentaenneaconta",
             "hexaenneaconta", "heptaenneaconta", "oktaenneaconta", "nonaenneaconta", "hekt"
     };
+    private final Molecule molecule;
+    private final Chain chain;
+    private final int length;
+
+    private final List<Integer> locantsOfMostSeniorGroup = new ArrayList<>();
+    private final List<Integer> locantsOfDoubleBonds = new ArrayList<>();
+    private final List<Integer> locantsOfTripleBonds = new ArrayList<>();
+    private final Map<String, List<Integer>> locantsOfSeniorGroups = new HashMap<>();
+    private final Map<Integer, List<Atom>> locantsOfSideChainStarts = new HashMap<>();
+    private final Map<String, List<Integer>> locantsOfSideChainNames = new HashMap<>();
+    public String name;
 
     private Nomenclature(Molecule molecule) throws Molecule.InvalidLigandConfigurationException {
         this(molecule, false);
     }
 
+    @SuppressWarnings("try")
     private Nomenclature(Molecule molecule, boolean isMain) throws Molecule.InvalidLigandConfigurationException {
         this.molecule = molecule;
         chain = new Chain(molecule);
@@ -56,9 +67,15 @@ public class Nomenclature {
             chain.isMain = true;
             chooseDirection();
         }
-        parse();
-        getSideChainNames();
-        name();
+        try (StageTimer timer = StageTimer.start(Metrics.Stage.PARSE_CHAIN, molecule.atoms.length)) {
+            parse();
+        }
+        try (StageTimer timer = StageTimer.start(Metrics.Stage.SIDE_CHAIN_NAMES, molecule.atoms.length)) {
+            getSideChainNames();
+        }
+        try (StageTimer timer = StageTimer.start(Metrics.Stage.NAME, molecule.atoms.length)) {
+            name();
+        }
     }
 
     /**
@@ -82,12 +99,69 @@ public class Nomenclature {
         return nomenclature.name;
     }
 
+    /**
+     * @return Pocet atomu molekuly, od ktereho se vedlejsi retezce pojmenovavaji paralelne.
+     */
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Nastavi, od kolika atomu molekuly se vedlejsi retezce pojmenovavaji paralelne. Mensi molekuly se pojmenovavaji ve vlakne
+     * volajiciho. Plati pro vsechna nasledna pojmenovani.
+     * @param threshold Pocet atomu, Integer.MAX_VALUE pro vzdy sekvencni pojmenovani.
+     */
+    public static void setParallelThreshold(int threshold) {
+        if (threshold < 1)
+            throw new IllegalArgumentException("Prah musi byt kladny.");
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * @return True, pokud se nazvy alkylovych vedlejsich retezcu pamatuji mezi pojmenovanimi.
+     */
+    public static boolean isSubstituentCaching() {
+        return substituentCaching;
+    }
+
+    /**
+     * Nastavi, zda se nazvy alkylovych vedlejsich retezcu pamatuji mezi pojmenovanimi. Nazvy jsou v obou pripadech stejne,
+     * vypnuti slouzi k porovnani. Plati pro vsechna nasledna pojmenovani, jiz ulozene nazvy zustavaji.
+     * @param caching True pro pamatovani nazvu.
+     */
+    public static void setSubstituentCaching(boolean caching) {
+        substituentCaching = caching;
+    }
+
+    /**
+     * Zapomene vsechny zapamatovane nazvy alkylovych vedlejsich retezcu.
+     */
+    public static void clearSubstituentNames() {
+        substituentNames.clear();
+    }
+
+    /**
+     * @return Mereni fazi pojmenovani, Metrics.NONE, pokud se nic nemeri.
+     */
+    public static Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Nastavi, kam se zaznamenava doba behu a alokovana pamet jednotlivych fazi pojmenovani. Plati pro vsechna nasledna
+     * pojmenovani ve vsech vlaknech.
+     * @param metrics Mereni fazi, Metrics.NONE pro vypnuti mereni.
+     */
+    public static void setMetrics(Metrics metrics) {
+        Nomenclature.metrics = Objects.requireNonNull(metrics);
+    }
+
     /**
      * Vytvori nazev molekuly.
      */
     private void name() {
         // Koren nazvu.
-        StringBuilder nameInProgress = new StringBuilder(alkanePrefixes[length-1]);
+        StringBuilder nameInProgress = new StringBuilder(ALKANE_PREFIXES[length-1]);
         if (chain.isMain) {
             if (locantsOfDoubleBonds.isEmpty() && locantsOfTripleBonds.isEmpty()) {
                 nameInProgress.append("an");
@@ -150,40 +224,73 @@ public class Nomenclature {
     }
 
     /**
-     * Paralelne ziskame nazvy vedlejsich retezcu pouzitim rekurze.
+     * Ziskame nazvy vedlejsich retezcu pouzitim rekurze. Kazdy vedlejsi retezec se pojmenuje samostatne nad vlastni molekulou,
+     * u velkych molekul paralelne. Nazvy se pak slouci v poradi lokantu, takze vysledek nezavisi na poradi dokonceni.
      * @throws Molecule.InvalidLigandConfigurationException
      */
     private void getSideChainNames() throws Molecule.InvalidLigandConfigurationException {
-        locantsOfSideChainStarts.entrySet().parallelStream().forEach(entry -> {
-            List<Atom> starts = entry.getValue();
-            Integer locant = entry.getKey();
-
-            for (Atom start : starts) {
-                for (int i = 0; i < start.ligands.length; i++) {
-                    Atom ligand = start.ligands[i];
-                    if (ligand != null) {
-                        if (ligand.ID == chain.atoms.get(locant).ID) {
-                            start.ligands[i] = null;
-                        }
-                    }
-                }
-                Molecule newMolecule = new Molecule(start);
-                try {
-                    newMolecule.identifyStructures();
-                } catch (Molecule.InvalidLigandConfigurationException e) {
-                    throw new RuntimeException(e);
-                }
-                Nomenclature sideChainName = null;
-                try {
-                    sideChainName = new Nomenclature(newMolecule);
-                } catch (Molecule.InvalidLigandConfigurationException e) {
-                    throw new RuntimeException(e);
-                }
-                List<Integer> locants = locantsOfSideChainNames.getOrDefault(sideChainName.name, new ArrayList<>());
+        List<Integer> locants = new ArrayList<>();
+        List<Atom> starts = new ArrayList<>();
+        List<Integer> sortedLocants = new ArrayList<>(locantsOfSideChainStarts.keySet());
+        Collections.sort(sortedLocants);
+        for (Integer locant : sortedLocants) {
+            for (Atom start : locantsOfSideChainStarts.get(locant)) {
                 locants.add(locant);
-                locantsOfSideChainNames.put(sideChainName.name, locants);
+                starts.add(start);
+            }
+        }
+
+        IntStream indices = IntStream.range(0, starts.size());
+        if (starts.size() > 1 && molecule.atoms.length >= parallelThreshold)
+            indices = indices.parallel();
+        List<String> names;
+        try {
+            names = indices.mapToObj(i -> getSideChainName(starts.get(i), locants.get(i))).toList();
+        } catch (RuntimeException e) {
+            // Vyjimka z vlakna fondu muze byt znovu zabalena, hledame puvodni pricinu.
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof Molecule.InvalidLigandConfigurationException invalid)
+                    throw invalid;
             }
-        });
+            throw e;
+        }
+
+        for (int i = 0; i < names.size(); i++)
+            locantsOfSideChainNames.computeIfAbsent(names.get(i), k -> new ArrayList<>()).add(locants.get(i));
+    }
+
+    /**
+     * Pojmenuje jeden vedlejsi retezec. Pracuje pouze s novou molekulou vedlejsiho retezce, puvodni molekulu jen cte.
+     * Nazvy alkylovych vedlejsich retezcu se pamatuji a pri opakovanem vyskytu stejneho retezce se znovu nevytvari.
+     * Po dosazeni maximalniho poctu se zapamatovane nazvy zapomenou a pamet se plni znovu.
+     * @param start Prvni atom vedlejsiho retezce.
+     * @param locant Lokant atomu hlavniho retezce, na ktery je vedlejsi retezec navazan.
+     * @return Nazev vedlejsiho retezce.
+     */
+    private String getSideChainName(Atom start, int locant) {
+        int startIndex = molecule.indexOf(start);
+        int parentIndex = molecule.indexOf(chain.atoms.get(locant));
+        String signature = substituentCaching ? molecule.getSideChainSignature(startIndex, parentIndex) : null;
+        if (signature != null) {
+            String name = substituentNames.get(signature);
+            if (name != null)
+                return name;
+        }
+
+        Molecule newMolecule = molecule.getSideChain(startIndex, parentIndex);
+        String name;
+        try {
+            newMolecule.identifyStructures();
+            name = new Nomenclature(newMolecule).name;
+        } catch (Molecule.InvalidLigandConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+        if (signature != null && signature.length() <= MAX_SIGNATURE_LENGTH) {
+            if (substituentNames.size() >= MAX_SUBSTITUENT_NAMES)
+                substituentNames.clear();
+            substituentNames.put(signature, name);
+        }
+        return name;
     }
 
     /**
@@ -211,20 +318,18 @@ public class Nomenclature {
 
         for (int i = 0; i < length; i++) {
             int locant = i + 1;
-            Atom atom = chain.atoms.get(i);
-            sumOfLocants += atom.numOfSeniorGroups * (i + 1);
-            sumOfLocants += atom.numOfSeniorGroups * (locantsOfSeniorGroups.size()-i+1);
-            //sumOfLocantsReversed += atom.numOfSeniorGroups * (locantsOfSeniorGroups.size()-i+1);
+            int atom = molecule.indexOf(chain.atoms.get(i));
+            sumOfLocants += molecule.numOfSeniorGroups[atom] * (i + 1);
+            sumOfLocants += molecule.numOfSeniorGroups[atom] * (locantsOfSeniorGroups.size()-i+1);
+            //sumOfLocantsReversed += molecule.numOfSeniorGroups[atom] * (locantsOfSeniorGroups.size()-i+1);
             if (i < chain.atoms.size() - 1) {
                 if (i < chain.atoms.size() - 1) {
-                    int nextAtomInChainID = chain.atoms.get(i + 1).ID;
-                    int bondMultiplicity = getBondMultiplicityBetweenTwoAtoms(atom, nextAtomInChainID);
+                    int bondMultiplicity = molecule.getBondOrder(atom, molecule.indexOf(chain.atoms.get(i + 1)));
                     if (bondMultiplicity > 1)
                         sumOfLocants += locant;
                 }
                 if (i > 0) {
-                    int previousAtomInChainID = chain.atoms.get(i - 1).ID;
-                    if (getBondMultiplicityBetweenTwoAtoms(atom, previousAtomInChainID) > 1)
+                    if (molecule.getBondOrder(atom, molecule.indexOf(chain.atoms.get(i - 1))) > 1)
                         sumOfLocantsReversed += length - locant;
                 }
             }
@@ -235,19 +340,6 @@ public class Nomenclature {
         }
     }
 
-    /**
-     * Zjisti nasobnost vazby 2 atomu.
-     * @param atom Atom ve vazbe.
-     * @param ligandID ID druheho atomu ve vazbe.
-     * @return Nasobnost vazby 2 atomu.
-     */
-    private int getBondMultiplicityBetweenTwoAtoms(Atom atom, int ligandID) {
-        return (int) Stream.of(atom.ligands)
-                .filter(Objects::nonNull)
-                .filter(ligand -> ligand.ID == ligandID)
-                .count();
-    }
-
     /**
      * Zjisti index prvku v seznamu.
      * @param array Zkoumany seznam.
@@ -268,25 +360,22 @@ public class Nomenclature {
      */
     private void parse() {
         for (int i = 0; i < chain.atoms.size(); i++) {
-            Atom atom = chain.atoms.get(i);
-            if (atom.hasSeniorGroup()) {
-                for (Map.Entry<String, Integer> entry : atom.numOfSeniorGroupsMap.entrySet()) {
-                    if (entry.getValue() > 0) {
-                        String group = entry.getKey();
-                        if (Objects.equals(group, molecule.mostSeniorGroup) && !Objects.equals(group, "-NO2")) {
-                            locantsOfMostSeniorGroup.add(i);
-                        } else {
-                            int indexOfSeniorGroup = getIndex(SENIOR_GROUPS, group);
-                            String seniorGroupPrefix = SENIOR_GROUP_PREFIXES[indexOfSeniorGroup];
-                            List<Integer> locants = locantsOfSeniorGroups.getOrDefault(seniorGroupPrefix, new ArrayList<>());
-                            locants.add(i);
-                            locantsOfSeniorGroups.put(seniorGroupPrefix, locants);
-                        }
+            int atom = molecule.indexOf(chain.atoms.get(i));
+            int seniorGroupMask = molecule.seniorGroupMasks[atom];
+            for (int indexOfSeniorGroup = 0; indexOfSeniorGroup < SENIOR_GROUPS.length; indexOfSeniorGroup++) {
+                if ((seniorGroupMask & (1 << indexOfSeniorGroup)) != 0) {
+                    String group = SENIOR_GROUPS[indexOfSeniorGroup];
+                    if (Objects.equals(group, molecule.mostSeniorGroup) && !Objects.equals(group, "-NO2")) {
+                        locantsOfMostSeniorGroup.add(i);
+                    } else {
+                        String seniorGroupPrefix = SENIOR_GROUP_PREFIXES[indexOfSeniorGroup];
+                        List<Integer> locants = locantsOfSeniorGroups.getOrDefault(seniorGroupPrefix, new ArrayList<>());
+                        locants.add(i);
+                        locantsOfSeniorGroups.put(seniorGroupPrefix, locants);
                     }
                 }
-            } if (atom.hasMultipleBond && i < chain.atoms.size() - 1) {
-                int nextAtomInChainID = chain.atoms.get(i + 1).ID;
-                int bondMultiplicity = getBondMultiplicityBetweenTwoAtoms(atom, nextAtomInChainID);
+            } if (molecule.hasMultipleBond[atom] && i < chain.atoms.size() - 1) {
+                int bondMultiplicity = molecule.getBondOrder(atom, molecule.indexOf(chain.atoms.get(i + 1)));
                 if (bondMultiplicity == 2) {
                     locantsOfDoubleBonds.add(i);
                 } else if (bondMultiplicity == 3) {
@@ -294,28 +383,24 @@ public class Nomenclature {
                 }
             }
             List<Atom> sideChains = new ArrayList<>();
-            for (Atom ligand : atom.ligands) {
-                if (ligand!= null && ligand.symbol == 'C') {
+            for (int bond = molecule.bondOffsets[atom]; bond < molecule.bondOffsets[atom + 1]; bond++) {
+                int ligand = molecule.bondTargets[bond];
+                if (molecule.elements[ligand] == 'C') {
+                    Atom ligandAtom = molecule.atoms[ligand];
+                    boolean isSideChain;
                     if (!chain.isCycle) {
-                        if (i > 0 && ligand.ID != chain.atoms.get(i - 1).ID && i < chain.atoms.size() - 1 && ligand.ID != chain.atoms.get(i + 1).ID) {
-                            sideChains.add(ligand);
-                        }
+                        isSideChain = i > 0 && ligandAtom != chain.atoms.get(i - 1) && i < chain.atoms.size() - 1 && ligandAtom != chain.atoms.get(i + 1);
+                    } else if (i == 0) {
+                        isSideChain = ligandAtom != chain.atoms.get(i + 1) && ligandAtom != chain.atoms.getLast();
+                    } else if (i == chain.atoms.size() - 1) {
+                        isSideChain = ligandAtom != chain.atoms.get(i - 1) && ligandAtom != chain.atoms.getFirst();
                     } else {
-                        if (i == 0) {
-                            if (ligand.ID != chain.atoms.get(i + 1).ID && ligand.ID != chain.atoms.getLast().ID) {
-                                sideChains.add(ligand);
-
-                            }
-                        } else if (i == chain.atoms.size() - 1) {
-                            if (ligand.ID != chain.atoms.get(i - 1).ID && ligand.ID != chain.atoms.getFirst().ID) {
-                                sideChains.add(ligand);
-
-                            }
-                        } else {
-                            if (ligand.ID != chain.atoms.get(i - 1).ID && ligand.ID != chain.atoms.get(i + 1).ID) {
-                                sideChains.add(ligand);
-                            }
-                        }
+                        isSideChain = ligandAtom != chain.atoms.get(i - 1) && ligandAtom != chain.atoms.get(i + 1);
+                    }
+                    // Vedlejsi retezec navazany nasobnou vazbou pridame tolikrat, kolik je nasobnost vazby.
+                    if (isSideChain) {
+                        for (int j = 0; j < molecule.bondOrders[bond]; j++)
+                            sideChains.add(ligandAtom);
                     }
                 }
             }
@@ -323,4 +408,4 @@ public class Nomenclature {
                 locantsOfSideChainStarts.put(i, sideChains);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,219 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Vyhledani cyklu v uhlikove kostre molekuly. Jedinym pruchodem do hloubky se urci vazby uzavirajici cykly a pomoci nejnizsiho
+ * dosazitelneho casu objeveni (low-link) mosty, takze atom lezi v cyklu, prave kdyz ma vazbu, ktera neni mostem. Pro kazdou
+ * uzaviraci vazbu se pak hleda nejmensi cyklus, ktery ji obsahuje, a z nich se vybere nejmensi sada nejmensich cyklu (SSSR),
+ * tedy tolik linearne nezavislych cyklu, kolik je uzaviracich vazeb.
+ */
+public class RingPerception {
+    public final boolean[] isInRing; // Atom lezi v nekterem cyklu
+    public final List<int[]> smallestRings = new ArrayList<>(); // Atomy cyklu v poradi, v jakem jdou po sobe, od nejmensich
+
+    private final Molecule molecule;
+    private final int size;
+    private final int[] discovered; // Poradi objeveni atomu pri pruchodu do hloubky, -1 znaci neobjeveny atom
+    private final int[] parents;
+    private final List<int[]> closures = new ArrayList<>(); // Uzaviraci vazby, prvni atom byl objeven drive
+
+    /**
+     * Vyhleda cykly v molekule.
+     * @param molecule Molekula v kompaktni reprezentaci.
+     */
+    public RingPerception(Molecule molecule) {
+        this.molecule = molecule;
+        size = molecule.atoms.length;
+        isInRing = new boolean[size];
+        discovered = new int[size];
+        parents = new int[size];
+        Arrays.fill(discovered, -1);
+        int[] low = new int[size];
+        int[] stack = new int[size];
+        int[] positions = new int[size];
+        for (int atom = 0; atom < size; atom++) {
+            if (molecule.elements[atom] == 'C' && discovered[atom] == -1)
+                search(atom, low, stack, positions);
+        }
+        if (!closures.isEmpty())
+            findSmallestRings();
+    }
+
+    /**
+     * Najde nejvetsi z nejmensich cyklu, ve kterem atom lezi.
+     * @param atom Index atomu.
+     * @return Atomy cyklu, nebo null, pokud atom v zadnem cyklu nelezi.
+     */
+    public int[] getLargestRing(int atom) {
+        int[] largest = null;
+        for (int[] ring : smallestRings) {
+            if ((largest == null || ring.length > largest.length) && contains(ring, atom))
+                largest = ring;
+        }
+        return largest;
+    }
+
+    /**
+     * Projde komponentu uhliku do hloubky s vlastnim zasobnikem. Zaznamena uzaviraci vazby a oznaci atomy, ktere lezi v cyklu.
+     * @param root Atom, ze ktereho pruchod zacina.
+     * @param low Pole pro nejnizsi poradi objeveni dosazitelne z podstromu atomu pres jednu uzaviraci vazbu.
+     * @param stack Pole pro zasobnik rozpracovanych atomu.
+     * @param positions Pole pro pozici vazby, kterou u kazdeho atomu na zasobniku prave zkoumame.
+     */
+    private void search(int root, int[] low, int[] stack, int[] positions) {
+        int time = 0;
+        int depth = 0;
+        parents[root] = -1;
+        discovered[root] = low[root] = time++;
+        stack[depth] = root;
+        positions[depth++] = molecule.bondOffsets[root];
+
+        while (depth > 0) {
+            int atom = stack[depth - 1];
+            if (positions[depth - 1] == molecule.bondOffsets[atom + 1]) {
+                depth--;
+                int parent = parents[atom];
+                if (parent != -1) {
+                    low[parent] = Math.min(low[parent], low[atom]);
+                    // Vazba do stromu, ktera neni mostem, lezi v cyklu.
+                    if (low[atom] <= discovered[parent]) {
+                        isInRing[atom] = true;
+                        isInRing[parent] = true;
+                    }
+                }
+                continue;
+            }
+            int ligand = molecule.bondTargets[positions[depth - 1]++];
+            if (molecule.elements[ligand] != 'C' || ligand == parents[atom])
+                continue;
+            if (discovered[ligand] == -1) {
+                parents[ligand] = atom;
+                discovered[ligand] = low[ligand] = time++;
+                stack[depth] = ligand;
+                positions[depth++] = molecule.bondOffsets[ligand];
+            } else if (discovered[ligand] < discovered[atom]) {
+                // Vazba na drive objeveny atom, ktery neni rodicem, uzavira cyklus. Z druhe strany ji uz nepocitame.
+                low[atom] = Math.min(low[atom], discovered[ligand]);
+                closures.add(new int[]{ligand, atom});
+            }
+        }
+    }
+
+    /**
+     * Vybere nejmensi sadu nejmensich cyklu. Kandidaty jsou nejmensi cyklus pres kazdou uzaviraci vazbu a pro pripad, ze by
+     * nebyly nezavisle, i cykly tvorene uzaviraci vazbou a cestou ve strome pruchodu. Kandidaty se berou od nejmensich a
+     * cyklus se prijme, pokud jeho vazby nejsou souctem vazeb jiz prijatych cyklu.
+     */
+    private void findSmallestRings() {
+        List<int[]> candidates = new ArrayList<>();
+        int[] queue = new int[size];
+        int[] previous = new int[size];
+        for (int[] closure : closures)
+            candidates.add(findShortestRing(closure[0], closure[1], queue, previous));
+        for (int[] closure : closures)
+            candidates.add(getTreeRing(closure[0], closure[1]));
+        // Razeni je stabilni, pri shode velikosti maji prednost nejmensi cykly pres uzaviraci vazby.
+        candidates.sort(Comparator.comparingInt(ring -> ring.length));
+
+        List<BitSet> basis = new ArrayList<>();
+        List<Integer> pivots = new ArrayList<>();
+        for (int[] ring : candidates) {
+            BitSet bonds = getBonds(ring);
+            for (int i = 0; i < basis.size(); i++) {
+                if (bonds.get(pivots.get(i)))
+                    bonds.xor(basis.get(i));
+            }
+            if (!bonds.isEmpty()) {
+                basis.add(bonds);
+                pivots.add(bonds.nextSetBit(0));
+                smallestRings.add(ring);
+                if (smallestRings.size() == closures.size())
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Najde nejkratsi cyklus pres uzaviraci vazbu prohledanim do sirky od jejiho prvniho atomu k druhemu bez teto vazby.
+     * @param start Drive objeveny atom uzaviraci vazby.
+     * @param end Druhy atom uzaviraci vazby.
+     * @param queue Pole pro frontu prohledavani.
+     * @param previous Pole pro predchudce atomu na ceste ze startu.
+     * @return Atomy cyklu od startu ke konci.
+     */
+    private int[] findShortestRing(int start, int end, int[] queue, int[] previous) {
+        Arrays.fill(previous, -2);
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        previous[start] = -1;
+        while (head < tail && previous[end] == -2) {
+            int current = queue[head++];
+            for (int bond = molecule.bondOffsets[current]; bond < molecule.bondOffsets[current + 1]; bond++) {
+                int ligand = molecule.bondTargets[bond];
+                if (isInRing[ligand] && molecule.elements[ligand] == 'C' && previous[ligand] == -2 && !(current == start && ligand == end)) {
+                    previous[ligand] = current;
+                    queue[tail++] = ligand;
+                }
+            }
+        }
+        int length = 0;
+        for (int atom = end; atom != -1; atom = previous[atom])
+            length++;
+        int[] ring = new int[length];
+        for (int atom = end; atom != -1; atom = previous[atom])
+            ring[--length] = atom;
+        return ring;
+    }
+
+    /**
+     * @param start Drive objeveny atom uzaviraci vazby, predek druheho atomu ve strome pruchodu.
+     * @param end Druhy atom uzaviraci vazby.
+     * @return Atomy cyklu tvoreneho uzaviraci vazbou a cestou ve strome pruchodu od startu ke konci.
+     */
+    private int[] getTreeRing(int start, int end) {
+        int length = 1;
+        for (int atom = end; atom != start; atom = parents[atom])
+            length++;
+        int[] ring = new int[length];
+        for (int atom = end; atom != start; atom = parents[atom])
+            ring[--length] = atom;
+        ring[0] = start;
+        return ring;
+    }
+
+    /**
+     * @param ring Atomy cyklu v poradi.
+     * @return Mnozinu vazeb cyklu urcenych pozici vazby u atomu s mensim indexem.
+     */
+    private BitSet getBonds(int[] ring) {
+        BitSet bonds = new BitSet(molecule.bondTargets.length);
+        for (int i = 0; i < ring.length; i++) {
+            int atom = ring[i];
+            int ligand = ring[(i + 1) % ring.length];
+            int from = Math.min(atom, ligand), to = Math.max(atom, ligand);
+            for (int bond = molecule.bondOffsets[from]; bond < molecule.bondOffsets[from + 1]; bond++) {
+                if (molecule.bondTargets[bond] == to)
+                    bonds.set(bond);
+            }
+        }
+        return bonds;
+    }
+
+    /**
+     * @param ring Atomy cyklu.
+     * @param atom Hledany atom.
+     * @return True, pokud cyklus atom obsahuje.
+     */
+    private static boolean contains(int[] ring, int atom) {
+        for (int ringAtom : ring) {
+            if (ringAtom == atom)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,283 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Soubor s molekulami ve SMILES formatu. Na kazdem radku je jedna molekula, za kterou muze po mezere nebo tabulatoru nasledovat
+ * jeji identifikator. Soubor se rozdeli na useky konci radku, kazdy usek se namapuje do pameti a useky se zpracovavaji paralelne.
+ * Useku je alespon nekolikrat vice nez vlaken fondu, ktery proud zpracovava, aby se paralelne zpracoval i maly soubor.
+ * Molekuly se nacitaji primo z namapovane pameti, retezce se vytvari az na vyzadani.
+ */
+public class SMILESFile implements AutoCloseable {
+    public static final int DEFAULT_CHUNK_SIZE = 64 << 20;
+    private static final int SEARCH_WINDOW = 4096;
+    private static final int CHUNKS_PER_THREAD = 4; // Pocet useku na vlakno, aby se vlakna vyrovnala i pri ruzne delce useku
+
+    private final FileChannel channel;
+    private final int maxChunkSize;
+
+    /**
+     * Otevre soubor s vychozi nejvetsi velikosti useku.
+     * @param path Cesta k souboru.
+     * @throws IOException
+     */
+    public SMILESFile(Path path) throws IOException {
+        this(path, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param path Cesta k souboru.
+     * @param chunkSize Nejvetsi priblizna velikost useku v bajtech. Mensi soubor se rozdeli na mensi useky podle poctu vlaken.
+     *                  Usek vzdy konci az za koncem radku.
+     * @throws IOException
+     */
+    public SMILESFile(Path path, int chunkSize) throws IOException {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("Velikost useku musi byt kladna.");
+        maxChunkSize = chunkSize;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    /**
+     * Molekula nactena z jednoho radku souboru.
+     */
+    public static class Entry {
+        public final long position; // Pozice zacatku radku v souboru
+        public final String id; // Identifikator molekuly, nebo null, pokud na radku neni
+        public final Molecule molecule; // Nactena molekula, nebo null, pokud ji nebylo mozne nacist
+        public final Exception error; // Vyjimka, ktera nacteni prerusila, nebo null
+        public final long parseNanos; // Doba nacteni molekuly v nanosekundach
+        private final ByteBuffer buffer;
+        private final int from;
+        private final int to;
+
+        private Entry(long position, String id, Molecule molecule, Exception error, long parseNanos, ByteBuffer buffer, int from, int to) {
+            this.position = position;
+            this.id = id;
+            this.molecule = molecule;
+            this.error = error;
+            this.parseNanos = parseNanos;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * @return SMILES retezec molekuly.
+         */
+        public String getSmiles() {
+            return decode(buffer, from, to);
+        }
+    }
+
+    /**
+     * Usek souboru zacinajici na zacatku radku a koncici za koncem radku.
+     * @param start Pozice prvniho bajtu useku.
+     * @param end Pozice za poslednim bajtem useku.
+     */
+    record Chunk(long start, long end) {
+    }
+
+    /**
+     * Rozdeli soubor na useky tak, aby se zadny radek nerozdelil. Velikost useku je nejvyse zadana nejvetsi velikost a nejvyse
+     * takova, aby na kazde vlakno pripadlo nekolik useku.
+     * @param parallelism Pocet vlaken, ktera useky zpracovavaji.
+     * @return Useky v poradi v souboru.
+     * @throws IOException
+     */
+    List<Chunk> split(int parallelism) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.min(maxChunkSize, Math.max(1, size / ((long) parallelism * CHUNKS_PER_THREAD)));
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer window = ByteBuffer.allocate(SEARCH_WINDOW);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(start + chunkSize, size);
+            // Konec useku posuneme za nejblizsi konec radku.
+            while (end < size) {
+                window.clear();
+                int read = channel.read(window, end - 1);
+                int newline = -1;
+                for (int i = 0; i < read && newline == -1; i++) {
+                    if (window.get(i) == '\n')
+                        newline = i;
+                }
+                if (newline != -1) {
+                    end += newline;
+                    break;
+                }
+                end = Math.min(end + read, size);
+            }
+            if (end - start > Integer.MAX_VALUE)
+                throw new IOException("Radek na pozici " + start + " je prilis dlouhy.");
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Nacte vsechny molekuly ze souboru. Useky se nacitaji paralelne, poradi molekul odpovida poradi v souboru. Pocet useku se
+     * urci podle fondu volajiciho vlakna, ve kterem paralelni proud pobezi, mimo fond podle spolecneho fondu.
+     * @return Proud nactenych molekul.
+     */
+    public Stream<Entry> getEntries() {
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        int parallelism = pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+        List<Chunk> chunks;
+        try {
+            chunks = split(parallelism);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunks.parallelStream().flatMap(this::read);
+    }
+
+    /**
+     * Pojmenuje vsechny molekuly ze souboru. Useky se zpracovavaji paralelne, poradi vysledku odpovida poradi v souboru.
+     * @return Proud vysledku.
+     */
+    public Stream<BatchNomenclature.Result> getNames() {
+        return getNames(null);
+    }
+
+    /**
+     * Pojmenuje vsechny molekuly ze souboru. Useky se zpracovavaji paralelne, poradi vysledku odpovida poradi v souboru.
+     * @param cache Vyrovnavaci pamet nazvu sdilena vlakny, nebo null, pokud se ma kazda molekula pojmenovat znovu.
+     * @return Proud vysledku.
+     */
+    public Stream<BatchNomenclature.Result> getNames(NameCache cache) {
+        return getEntries().map(entry -> {
+            String smiles = entry.getSmiles();
+            if (entry.error != null)
+                return new BatchNomenclature.Result(smiles, null, entry.error, entry.parseNanos);
+            long start = System.nanoTime();
+            try {
+                String name = cache != null ? cache.getName(smiles, entry.molecule) : Nomenclature.getName(entry.molecule);
+                return new BatchNomenclature.Result(smiles, name, null, entry.parseNanos + System.nanoTime() - start);
+            } catch (Exception e) {
+                return new BatchNomenclature.Result(smiles, null, e, entry.parseNanos + System.nanoTime() - start);
+            }
+        });
+    }
+
+    /**
+     * Namapuje usek do pameti a postupne z nej nacita molekuly.
+     * @param chunk Nacitany usek.
+     * @return Proud molekul z useku.
+     */
+    private Stream<Entry> read(Chunk chunk) {
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Spliterator<Entry> entries = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private int lineStart = 0;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Entry> action) {
+                int limit = buffer.limit();
+                while (lineStart < limit) {
+                    int lineEnd = lineStart;
+                    while (lineEnd < limit && buffer.get(lineEnd) != '\n')
+                        lineEnd++;
+                    int from = lineStart;
+                    lineStart = lineEnd + 1;
+                    Entry entry = readLine(buffer, chunk.start + from, from, lineEnd);
+                    // Prazdne radky preskakujeme.
+                    if (entry != null) {
+                        action.accept(entry);
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+        return StreamSupport.stream(entries, false);
+    }
+
+    /**
+     * Nacte molekulu z jednoho radku.
+     * @param buffer Namapovany usek.
+     * @param position Pozice radku v souboru.
+     * @param from Pozice zacatku radku v useku.
+     * @param to Pozice konce radku v useku.
+     * @return Nactenou molekulu, nebo null, pokud je radek prazdny nebo obsahuje jen mezery.
+     */
+    private static Entry readLine(ByteBuffer buffer, long position, int from, int to) {
+        if (to > from && buffer.get(to - 1) == '\r')
+            to--;
+        // Mezery pred SMILES retezcem preskocime, aby se radek neztratil jako prazdny.
+        while (from < to && isWhitespace(buffer.get(from)))
+            from++;
+        int smilesEnd = from;
+        while (smilesEnd < to && !isWhitespace(buffer.get(smilesEnd)))
+            smilesEnd++;
+        if (smilesEnd == from)
+            return null;
+
+        int idStart = smilesEnd;
+        while (idStart < to && isWhitespace(buffer.get(idStart)))
+            idStart++;
+        int idEnd = to;
+        while (idEnd > idStart && isWhitespace(buffer.get(idEnd - 1)))
+            idEnd--;
+        String id = idStart < idEnd ? decode(buffer, idStart, idEnd) : null;
+
+        long start = System.nanoTime();
+        try {
+            Molecule molecule = SMILESParser.parseMolecule(buffer, from, smilesEnd);
+            return new Entry(position, id, molecule, null, System.nanoTime() - start, buffer, from, smilesEnd);
+        } catch (Exception e) {
+            return new Entry(position, id, null, e, System.nanoTime() - start, buffer, from, smilesEnd);
+        }
+    }
+
+    /**
+     * @param b Bajt ze souboru.
+     * @return True, pokud bajt oddeluje SMILES retezec od identifikatoru.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * Prevede usek bufferu v ASCII kodovani na retezec.
+     * @param buffer Buffer.
+     * @param from Pozice prvniho bajtu.
+     * @param to Pozice za poslednim bajtem.
+     * @return Retezec.
+     */
+    private static String decode(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Zavre soubor. Jiz namapovane useky zustavaji platne.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -1,32 +1,48 @@
 package cz.cuni.mff.java.botkova.nomenclature;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Stack;
 
 /**
- * Trida pro nacitani molekul z retezcu ve formatu SMILES
+ * Trida pro nacitani molekul z retezcu ve formatu SMILES. Retezec se cte primo ze zdroje, znaky se rozpoznavaji pomoci tabulky
+ * a pri cteni se nealokuje nic jineho nez samotne atomy.
  */
 public class SMILESParser {
-    private static final String ATOM_SYMBOLS= "CONS"; // Pismena predstavujici atomy
-    private static final String BOND_SYMBOLS= "-=#"; // Symboly predstavujici nasobnosti vazeb
+    // Druhy znaku ve SMILES retezci.
+    private static final byte INVALID = 0;
+    private static final byte ATOM = 1;
+    private static final byte BOND = 2;
+    private static final byte BRANCH_START = 3;
+    private static final byte BRANCH_END = 4;
+    private static final byte DIGIT = 5;
 
-    /**
-     * Rozhodne, zda znak predstavuje atom.
-     * @param ch Nacteny znak.
-     * @return True, pokud znak predstavuje podporovany atom. False, pokud ne.
-     */
-    private static boolean isAtom(char ch) {
-        return ATOM_SYMBOLS.indexOf(ch) != -1;
+    private static final byte[] CHARACTER_TYPES = new byte[128]; // Druh znaku podle jeho ASCII kodu
+    private static final byte[] BOND_MULTIPLICITIES = new byte[128]; // Nasobnost vazby podle jejiho symbolu
+
+    private static final int BRANCH = -1; // Znacka zacatku vetve v zasobniku
+    private static final int NO_ATOM = -1; // Volna cislice cyklu
+
+    static {
+        for (char ch : "CONS".toCharArray()) // Pismena predstavujici atomy
+            CHARACTER_TYPES[ch] = ATOM;
+        for (char ch : "-=#".toCharArray()) // Symboly predstavujici nasobnosti vazeb
+            CHARACTER_TYPES[ch] = BOND;
+        for (char ch = '0'; ch <= '9'; ch++)
+            CHARACTER_TYPES[ch] = DIGIT;
+        CHARACTER_TYPES['('] = BRANCH_START;
+        CHARACTER_TYPES[')'] = BRANCH_END;
+        BOND_MULTIPLICITIES['-'] = 1;
+        BOND_MULTIPLICITIES['='] = 2;
+        BOND_MULTIPLICITIES['#'] = 3;
     }
 
     /**
-     * Rozhodne, zda znak predstavuje nasobnost vazby.
+     * Zjisti druh znaku.
      * @param ch Nacteny znak.
-     * @return True, pokud znak predstavuje nasobnost vazby. False, pokud ne.
+     * @return Druh znaku, pro nepodporovane znaky INVALID.
      */
-    private static boolean isBond(char ch) {
-        return BOND_SYMBOLS.indexOf(ch) != -1;
+    private static byte getCharacterType(char ch) {
+        return ch < CHARACTER_TYPES.length ? CHARACTER_TYPES[ch] : INVALID;
     }
 
     /**
@@ -45,106 +61,171 @@ public class SMILESParser {
     }
 
     /**
-     * Pokud znak predstavuje nasobnost vazby, funkce vrati nasobnost.
-     * @param ch Nacteny znak
-     * @return Nasobnost vazby.
+     * Ze SMILES retezce vygeneruje instanci tridy Molekula.
+     * @param smiles SMILES retezec.
+     * @return Instanci molekuly.
      */
-    private static int getBondMultiplicity(char ch) {
-        return switch (ch) {
-            case '-' -> 1;
-            case '=' -> 2;
-            case '#' -> 3;
-            default -> -1;
-        };
+    public static Molecule parseMolecule(CharSequence smiles) throws InvalidSmilesException, Atom.LigancyExceededException {
+        return parseMolecule(smiles, 0, smiles.length());
     }
 
     /**
-     * Ze SMILES retezce vygeneruje instanci tridy Molekula.
-     * @param smiles SMILES retezec.
+     * Z useku bufferu s SMILES retezcem v ASCII kodovani vygeneruje instanci tridy Molekula. Pozice bufferu se nemeni.
+     * @param buffer Buffer se SMILES retezcem.
+     * @param from Pozice prvniho znaku retezce.
+     * @param to Pozice za poslednim znakem retezce.
      * @return Instanci molekuly.
      */
-    public static Molecule parseMolecule(String smiles) throws InvalidSmilesException, Atom.LigancyExceededException {
-        char[] smilesCharArray = smiles.toCharArray();
-        char startChar = smilesCharArray[0];
-        if (startChar != 'C') {
-                throw new InvalidSmilesException.InvalidFormat();
+    public static Molecule parseMolecule(ByteBuffer buffer, int from, int to) throws InvalidSmilesException, Atom.LigancyExceededException {
+        return parseMolecule(new AsciiSequence(buffer), from, to);
+    }
+
+    /**
+     * Z useku SMILES retezce vygeneruje instanci tridy Molekula a zaznamena dobu nacteni.
+     * @param smiles Retezec obsahujici SMILES.
+     * @param from Pozice prvniho znaku.
+     * @param to Pozice za poslednim znakem.
+     * @return Instanci molekuly.
+     */
+    private static Molecule parseMolecule(CharSequence smiles, int from, int to) throws InvalidSmilesException, Atom.LigancyExceededException {
+        try (StageTimer timer = StageTimer.start(Metrics.Stage.PARSE_SMILES, 0)) {
+            Molecule molecule = readMolecule(smiles, from, to);
+            timer.setAtoms(molecule.numberOfAtoms);
+            return molecule;
         }
-        // Prvni znak ve SMILES retezci musi byt pismeno znacici atom. Pokud ne, tak je retezec neplatne zadan a program skonci.
-        Atom start = recognizeAtom(startChar);
-        if (start == null)
-            throw new InvalidSmilesException.InvalidCharacter(startChar);
+    }
+
+    /**
+     * Z useku SMILES retezce vygeneruje instanci tridy Molekula.
+     * @param smiles Retezec obsahujici SMILES.
+     * @param from Pozice prvniho znaku.
+     * @param to Pozice za poslednim znakem.
+     * @return Instanci molekuly.
+     */
+    private static Molecule readMolecule(CharSequence smiles, int from, int to) throws InvalidSmilesException, Atom.LigancyExceededException {
+        // Prvni znak ve SMILES retezci musi byt uhlik. Pokud ne, tak je retezec neplatne zadan a program skonci.
+        if (from >= to || smiles.charAt(from) != 'C')
+            throw new InvalidSmilesException.InvalidFormat();
+        Atom start = recognizeAtom('C');
         start.ID = 0;
         Molecule molecule = new Molecule(start);
 
+        // Atomy ukladame v poradi nacteni, v zasobniku a u cyklu si pamatujeme jejich poradi.
+        Atom[] atoms = new Atom[Math.min(to - from, 16)];
+        int numOfAtoms = 0;
+        atoms[numOfAtoms++] = start;
+
         // Inicializujeme zasobnik pro uschovu atomu a informaci, v jake vetvi se nachazeji.
-        Stack<Atom> stack = new Stack<>();
-        stack.push(start);
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = 0;
         int bondMultiplicity = 1;
-        HashMap<Integer, Atom> startsOfCycles = new HashMap<>();
-        for (char ch : Arrays.copyOfRange(smilesCharArray, 1, smilesCharArray.length)) {
-            // Pokud nacitany znak predstavuje atom a nahore v zasobniku je taky atom, tak je to jeho rodic a navazeme je na sebe s danou nasobnosti.
-            if (isAtom(ch)) {
-                Atom atom = recognizeAtom(ch);
-                Atom parent = stack.peek();
-
-                if (parent != null) {
-                    parent.bindAtoms(atom, bondMultiplicity);
-                    molecule.numberOfAtoms++;
-                    atom.ID = molecule.numberOfAtoms-1;
-                    bondMultiplicity = 1;
-                }
-                // Atom pridame do zasobniku.
-                stack.push(atom);
-            // Ziskame nasobnost vazby dalsiho atomu, ktery nacteme, s atomem na vrcholu zasobniku.
-            } else if (isBond(ch)) {
-                bondMultiplicity = getBondMultiplicity(ch);
-            // '(' znaci zacatek nove vetve, ktera se bude vazat na atom pred '('.
-            } else if (ch == '(') {
-                // "null" bude znacit zacatek vetve
-                stack.push(null);
-            // ')' znaci konec vetve. "null" nam slouzil, jako placeholder zacatku nove vetve, takze odebirame atomy ze zasobniku dokud na nej nenarazime.
-            // Atom, ktery byl za "null" navazeme na atom, ktery byl pred nim.
-            } else if (ch == ')') {
-                if (!stack.isEmpty()) {
-                    Atom branchStart = null;
-                    Atom atom = stack.pop();
-                    while (atom != null) {
-                        branchStart = atom;
-                        atom = stack.pop();
+        int[] startsOfCycles = new int[10];
+        Arrays.fill(startsOfCycles, NO_ATOM);
+        for (int i = from + 1; i < to; i++) {
+            char ch = smiles.charAt(i);
+            switch (getCharacterType(ch)) {
+                // Pokud nacitany znak predstavuje atom a nahore v zasobniku je taky atom, tak je to jeho rodic a navazeme je na sebe s danou nasobnosti.
+                case ATOM -> {
+                    Atom atom = recognizeAtom(ch);
+                    int parent = stack[top - 1];
+
+                    if (parent != BRANCH) {
+                        atoms[parent].bindAtoms(atom, bondMultiplicity);
+                        molecule.numberOfAtoms++;
+                        atom.ID = molecule.numberOfAtoms-1;
+                        bondMultiplicity = 1;
                     }
-                    Atom parent = stack.peek();
-                    parent.bindAtoms(branchStart, bondMultiplicity);
-                    bondMultiplicity = 1;
-                    molecule.numberOfAtoms++;
-                    if (branchStart != null) {
-                        branchStart.ID = molecule.numberOfAtoms-1;
-                    } else
-                        throw new InvalidSmilesException.InvalidFormat();
+                    // Atom pridame do zasobniku.
+                    if (numOfAtoms == atoms.length)
+                        atoms = Arrays.copyOf(atoms, 2 * atoms.length);
+                    atoms[numOfAtoms] = atom;
+                    if (top == stack.length)
+                        stack = Arrays.copyOf(stack, 2 * stack.length);
+                    stack[top++] = numOfAtoms++;
+                }
+                // Ziskame nasobnost vazby dalsiho atomu, ktery nacteme, s atomem na vrcholu zasobniku.
+                case BOND -> bondMultiplicity = BOND_MULTIPLICITIES[ch];
+                // '(' znaci zacatek nove vetve, ktera se bude vazat na atom pred '('.
+                case BRANCH_START -> {
+                    if (top == stack.length)
+                        stack = Arrays.copyOf(stack, 2 * stack.length);
+                    stack[top++] = BRANCH;
                 }
-            // Zacatek cyklu je znacen cislici, konec take.
-            } else if (Character.isDigit(ch)) {
-                Integer key = Character.getNumericValue(ch);
-                // Pokud mame danou cislici jiz ulozenou, tak se jedna o konec cyklu, kdy ho spojime se zacatkem, ktery je ulozen v hash mape.
-                if (startsOfCycles.containsKey(key)) {
-                    Atom startOfCycle = startsOfCycles.get(key);
-                    Atom endOfCycle = stack.peek();
-                    molecule.startsAndEndsOfCycles.add(new Atom[]{startOfCycle, endOfCycle});
-
-                    startOfCycle.bindAtoms(endOfCycle, bondMultiplicity);
+                // ')' znaci konec vetve. Znacka zacatku vetve slouzi jako placeholder, takze odebirame atomy ze zasobniku dokud na ni nenarazime.
+                // Atom, ktery byl za znackou navazeme na atom, ktery byl pred ni.
+                case BRANCH_END -> {
+                    int branchStart = BRANCH;
+                    while (top > 0 && stack[top - 1] != BRANCH)
+                        branchStart = stack[--top];
+                    // Vetev musi byt neprazdna, uzavrena a navazana na atom.
+                    if (top < 2 || branchStart == BRANCH || stack[top - 2] == BRANCH)
+                        throw new InvalidSmilesException.InvalidFormat();
+                    top--;
+                    atoms[stack[top - 1]].bindAtoms(atoms[branchStart], bondMultiplicity);
                     bondMultiplicity = 1;
-                    startsOfCycles.remove(key);
+                    molecule.numberOfAtoms++;
+                    atoms[branchStart].ID = molecule.numberOfAtoms-1;
                 }
-                else {
-                    Atom  startOfCycle = stack.peek();
-                    startsOfCycles.put(key, startOfCycle);
+                // Zacatek cyklu je znacen cislici, konec take.
+                case DIGIT -> {
+                    int key = ch - '0';
+                    int current = stack[top - 1];
+                    if (current == BRANCH)
+                        throw new InvalidSmilesException.InvalidFormat();
+                    // Pokud mame danou cislici jiz ulozenou, tak se jedna o konec cyklu, kdy ho spojime se zacatkem.
+                    if (startsOfCycles[key] != NO_ATOM) {
+                        Atom startOfCycle = atoms[startsOfCycles[key]];
+                        Atom endOfCycle = atoms[current];
+                        molecule.startsAndEndsOfCycles.add(new Atom[]{startOfCycle, endOfCycle});
+
+                        startOfCycle.bindAtoms(endOfCycle, bondMultiplicity);
+                        bondMultiplicity = 1;
+                        startsOfCycles[key] = NO_ATOM;
+                    } else {
+                        startsOfCycles[key] = current;
+                    }
                 }
-            } else {
-                throw new InvalidSmilesException.InvalidCharacter(ch);
+                default -> throw new InvalidSmilesException.InvalidCharacter(ch);
             }
         }
         return molecule;
     }
 
+    /**
+     * Pohled na usek bufferu v ASCII kodovani jako na retezec znaku. Cte se primo z bufferu, nic se nekopiruje.
+     */
+    private static class AsciiSequence implements CharSequence {
+        private final ByteBuffer buffer;
+
+        AsciiSequence(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder sequence = new StringBuilder(end - start);
+            for (int i = start; i < end; i++)
+                sequence.append(charAt(i));
+            return sequence;
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+
     public static class InvalidSmilesException extends Exception {
         public InvalidSmilesException(String message) {
             super(message);
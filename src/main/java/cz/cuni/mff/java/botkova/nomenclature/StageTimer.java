@@ -0,0 +1,89 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Mereni jednoho behu faze pojmenovani, ktere se pri uzavreni zaznamena do nastavenych Metrics. Pokud se nic nemeri,
+ * vraci se sdilena instance, ktera nic nedela, takze vypnute mereni stoji jen cteni jedne promenne. Mereni se otevira
+ * v try-with-resources primo kolem merene faze, bez lambdy, aby vypnute mereni nic nealokovalo. Metody, ktere promennou
+ * mereni v tele nepouzivaji, potlacuji varovani try.
+ */
+final class StageTimer implements AutoCloseable {
+    private static final StageTimer NONE = new StageTimer(null, null, 0);
+
+    private final Metrics metrics;
+    private final Metrics.Stage stage;
+    private final long startNanos;
+    private final long startBytes;
+    private int atoms;
+
+    private StageTimer(Metrics metrics, Metrics.Stage stage, int atoms) {
+        this.metrics = metrics;
+        this.stage = stage;
+        this.atoms = atoms;
+        startBytes = metrics != null ? getAllocatedBytes() : 0;
+        startNanos = metrics != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Zacne merit fazi.
+     * @param stage Faze.
+     * @param atoms Pocet atomu zpracovavane molekuly, pokud je znamy.
+     * @return Mereni, ktere je potreba uzavrit na konci faze.
+     */
+    static StageTimer start(Metrics.Stage stage, int atoms) {
+        Metrics metrics = Nomenclature.getMetrics();
+        if (metrics == Metrics.NONE)
+            return NONE;
+        return new StageTimer(metrics, stage, atoms);
+    }
+
+    /**
+     * Nastavi pocet atomu, pokud nebyl na zacatku faze znamy.
+     * @param atoms Pocet atomu zpracovavane molekuly.
+     */
+    void setAtoms(int atoms) {
+        if (metrics != null)
+            this.atoms = atoms;
+    }
+
+    /**
+     * Ukonci mereni a zaznamena ho.
+     */
+    @Override
+    public void close() {
+        if (metrics == null)
+            return;
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = startBytes != -1 ? getAllocatedBytes() - startBytes : -1;
+        metrics.record(stage, atoms, nanos, bytes);
+    }
+
+    /**
+     * @return Pamet alokovanou aktualnim vlaknem od jeho spusteni, nebo -1, pokud ji JVM neumi merit.
+     */
+    private static long getAllocatedBytes() {
+        return Threads.THREADS != null ? Threads.THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * Rozhrani JVM pro mereni alokaci vlaken. Nacita se az pri prvnim mereni, aby vypnute mereni nezdrzovalo start.
+     */
+    private static class Threads {
+        private static final com.sun.management.ThreadMXBean THREADS = getThreads();
+
+        /**
+         * @return Rozhrani JVM pro mereni alokaci vlaken, nebo null, pokud neni k dispozici nebo je vypnute.
+         */
+        private static com.sun.management.ThreadMXBean getThreads() {
+            try {
+                if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                        && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+                    return threads;
+            } catch (LinkageError e) {
+                // Modul java.management neni k dispozici.
+            }
+            return null;
+        }
+    }
+}
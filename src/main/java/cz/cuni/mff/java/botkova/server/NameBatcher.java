@@ -0,0 +1,190 @@
+package cz.cuni.mff.java.botkova.server;
+
+import cz.cuni.mff.java.botkova.nomenclature.BatchNomenclature;
+import cz.cuni.mff.java.botkova.nomenclature.NameCache;
+import cz.cuni.mff.java.botkova.nomenclature.Nomenclature;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Seskupovani soubeznych pozadavku na pojmenovani do davek. Pozadavky se radi do fronty, ze ktere je jedno vlakno vybira po
+ * davkach. Davka se odesle, jakmile dosahne maximalni velikosti, nebo jakmile od prvniho pozadavku v davce uplyne maximalni
+ * doba cekani, takze osamely pozadavek se zdrzi nejvyse o tuto dobu. Davka se rozdeli mezi vlakna, ktera molekuly
+ * pojmenovavaji, a stejne SMILES retezce v jedne davce se pojmenuji jen jednou.
+ */
+public class NameBatcher implements AutoCloseable {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    public static final long DEFAULT_MAX_DELAY_MICROS = 500;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService workers;
+    private final int threads;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final NameCache cache;
+    private final Thread dispatcher;
+    private volatile boolean closed = false;
+
+    /**
+     * Vytvori seskupovani s poctem vlaken podle poctu procesoru a s vychozi velikosti davky a dobou cekani.
+     */
+    public NameBatcher() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MICROS, null);
+    }
+
+    /**
+     * @param threads Pocet vlaken, ktera pojmenovavaji molekuly.
+     * @param maxBatchSize Maximalni pocet pozadavku v jedne davce.
+     * @param maxDelayMicros Maximalni doba v mikrosekundach, po kterou se na doplneni davky ceka.
+     * @param cache Vyrovnavaci pamet nazvu sdilena vlakny, nebo null, pokud se ma kazda molekula pojmenovat znovu.
+     */
+    public NameBatcher(int threads, int maxBatchSize, long maxDelayMicros, NameCache cache) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Pocet vlaken musi byt kladny.");
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("Velikost davky musi byt kladna.");
+        if (maxDelayMicros < 0)
+            throw new IllegalArgumentException("Doba cekani nesmi byt zaporna.");
+        this.threads = threads;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.cache = cache;
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "nomenclature-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher = new Thread(this::dispatch, "nomenclature-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Pozadavek na pojmenovani cekajici ve fronte.
+     * @param smiles SMILES retezec.
+     * @param result Vysledek, ktery se doplni po pojmenovani.
+     */
+    private record Request(String smiles, CompletableFuture<BatchNomenclature.Result> result) {
+    }
+
+    /**
+     * Zaradi molekulu k pojmenovani. Chyby pojmenovani se nevyhazuji, ale vraci se ve vysledku.
+     * @param smiles SMILES retezec.
+     * @return Budouci vysledek pojmenovani.
+     */
+    public CompletableFuture<BatchNomenclature.Result> submit(String smiles) {
+        CompletableFuture<BatchNomenclature.Result> result = new CompletableFuture<>();
+        if (closed) {
+            result.completeExceptionally(new RejectedExecutionException("Seskupovani pozadavku bylo ukonceno."));
+            return result;
+        }
+        Request request = new Request(smiles, result);
+        queue.add(request);
+        // Seskupovani mohlo skoncit az po zarazeni pozadavku, ktery by pak nikdo nevybral.
+        if (closed && queue.remove(request))
+            result.completeExceptionally(new RejectedExecutionException("Seskupovani pozadavku bylo ukonceno."));
+        return result;
+    }
+
+    /**
+     * Vybira pozadavky z fronty po davkach a predava je vlaknum, dokud neni seskupovani ukonceno.
+     */
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request request = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (request == null)
+                        break;
+                    batch.add(request);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+                send(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        } catch (InterruptedException e) {
+            // Seskupovani bylo ukonceno.
+        }
+        batch.addAll(queue);
+        for (Request request : batch)
+            request.result.completeExceptionally(new RejectedExecutionException("Seskupovani pozadavku bylo ukonceno."));
+    }
+
+    /**
+     * Seskupi pozadavky se stejnym SMILES retezcem, rozdeli ruzne retezce na nejvyse tolik casti, kolik je vlaken, a preda
+     * je k pojmenovani.
+     * @param batch Davka pozadavku.
+     */
+    private void send(List<Request> batch) {
+        Map<String, List<Request>> requestsBySmiles = new LinkedHashMap<>();
+        for (Request request : batch)
+            requestsBySmiles.computeIfAbsent(request.smiles, smiles -> new ArrayList<>(1)).add(request);
+        List<List<Request>> groups = new ArrayList<>(requestsBySmiles.values());
+        int parts = Math.min(threads, groups.size());
+        for (int part = 0; part < parts; part++) {
+            List<List<Request>> partGroups = groups.subList(part * groups.size() / parts, (part + 1) * groups.size() / parts);
+            try {
+                workers.execute(() -> name(partGroups));
+            } catch (RejectedExecutionException e) {
+                for (List<Request> requests : partGroups) {
+                    for (Request request : requests)
+                        request.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pojmenuje cast davky. Pokud pojmenovani prerusi chyba, ktera neni vyjimkou, skonci touto chybou vsechny dosud
+     * nedokoncene pozadavky casti, aby na ne nikdo necekal donekonecna.
+     * @param groups Skupiny pozadavku, kazda se stejnym SMILES retezcem.
+     */
+    private void name(List<List<Request>> groups) {
+        int named = 0;
+        try {
+            for (; named < groups.size(); named++) {
+                List<Request> requests = groups.get(named);
+                BatchNomenclature.Result result = getName(requests.get(0).smiles);
+                for (Request request : requests)
+                    request.result.complete(result);
+            }
+        } catch (Throwable t) {
+            for (List<Request> requests : groups.subList(named, groups.size())) {
+                for (Request request : requests)
+                    request.result.completeExceptionally(t);
+            }
+            throw t;
+        }
+    }
+
+    /**
+     * Pojmenuje jednu molekulu. Chyby se nevyhazuji, ale vraci se ve vysledku.
+     * @param smiles SMILES retezec.
+     * @return Vysledek pojmenovani.
+     */
+    private BatchNomenclature.Result getName(String smiles) {
+        try {
+            return new BatchNomenclature.Result(smiles, cache != null ? cache.getName(smiles) : Nomenclature.getName(smiles), null);
+        } catch (Exception e) {
+            return new BatchNomenclature.Result(smiles, null, e);
+        }
+    }
+
+    /**
+     * Ukonci seskupovani. Pozadavky, ktere jeste nebyly odeslany k pojmenovani, skonci chybou, odeslane se jeste dokonci.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,278 @@
+package cz.cuni.mff.java.botkova.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import cz.cuni.mff.java.botkova.nomenclature.Atom;
+import cz.cuni.mff.java.botkova.nomenclature.BatchNomenclature;
+import cz.cuni.mff.java.botkova.nomenclature.Molecule;
+import cz.cuni.mff.java.botkova.nomenclature.NameCache;
+import cz.cuni.mff.java.botkova.nomenclature.SMILESParser;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+/**
+ * HTTP sluzba, ktera pojmenovava molekuly zadane ve SMILES formatu. Kazdy pozadavek se obsluhuje ve vlastnim virtualnim
+ * vlakne, samotne pojmenovani probiha na vlaknech seskupovani pozadavku, ktere soubezne pozadavky sdruzuje do davek.
+ * <ul>
+ *     <li>{@code GET /name?smiles=...} nebo {@code POST /name} se SMILES retezcem v tele vrati nazev jako prosty text.</li>
+ *     <li>{@code POST /batch} s jednim SMILES retezcem na radek vrati pro kazdy neprazdny radek v poradi vstupu jeden JSON
+ *     objekt na radek (NDJSON) s polozkami {@code smiles} a {@code name}, nebo {@code smiles} a {@code error}.</li>
+ * </ul>
+ * Na pojmenovani jedne molekuly se ceka nejvyse danou dobu, po jejim uplynuti se misto nazvu vrati chyba.
+ */
+public class NomenclatureServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+    // Pocet molekul jednoho davkoveho pozadavku, ktere se pojmenovavaji a jejichz vysledek jeste nebyl odeslan.
+    private static final int MAX_IN_FLIGHT = 4 * NameBatcher.DEFAULT_MAX_BATCH_SIZE;
+
+    private final HttpServer server;
+    private final NameBatcher batcher;
+    private final long timeoutMillis;
+    private final ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param address Adresa a port, na kterych sluzba posloucha. Port 0 znaci libovolny volny port.
+     * @param batcher Seskupovani pozadavku, ktere molekuly pojmenovava. Zavre se spolu se sluzbou.
+     * @throws IOException
+     */
+    public NomenclatureServer(InetSocketAddress address, NameBatcher batcher) throws IOException {
+        this(address, batcher, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param address Adresa a port, na kterych sluzba posloucha. Port 0 znaci libovolny volny port.
+     * @param batcher Seskupovani pozadavku, ktere molekuly pojmenovava. Zavre se spolu se sluzbou.
+     * @param timeoutMillis Nejdelsi doba v milisekundach, po kterou se ceka na pojmenovani jedne molekuly.
+     * @throws IOException
+     */
+    public NomenclatureServer(InetSocketAddress address, NameBatcher batcher, long timeoutMillis) throws IOException {
+        if (timeoutMillis < 1)
+            throw new IllegalArgumentException("Doba cekani musi byt kladna.");
+        this.batcher = batcher;
+        this.timeoutMillis = timeoutMillis;
+        server = HttpServer.create(address, 0);
+        server.setExecutor(requests);
+        server.createContext("/name", this::handleName);
+        server.createContext("/batch", this::handleBatch);
+    }
+
+    /**
+     * Spusti sluzbu.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return Port, na kterem sluzba posloucha.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Pojmenuje jednu molekulu.
+     * @param exchange Pozadavek.
+     * @throws IOException
+     */
+    private void handleName(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String smiles;
+            if (exchange.getRequestMethod().equals("GET"))
+                smiles = getQueryParameter(exchange.getRequestURI().getRawQuery(), "smiles");
+            else if (exchange.getRequestMethod().equals("POST"))
+                smiles = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8).strip();
+            else {
+                sendText(exchange, 405, "Povolene metody jsou GET a POST.");
+                return;
+            }
+            if (smiles == null || smiles.isEmpty()) {
+                sendText(exchange, 400, "Chybi SMILES retezec.");
+                return;
+            }
+
+            BatchNomenclature.Result result = getResult(batcher.submit(smiles), smiles);
+            if (result.isSuccess())
+                sendText(exchange, 200, result.name());
+            else
+                sendText(exchange, getStatus(result.error()), getMessage(result.error()));
+        }
+    }
+
+    /**
+     * Pojmenuje molekuly z tela pozadavku, jednu na kazdem radku. Vysledky se odesilaji prubezne v poradi vstupu, pricemz se
+     * soubezne pojmenovava nejvyse dany pocet molekul.
+     * @param exchange Pozadavek.
+     * @throws IOException
+     */
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendText(exchange, 405, "Povolena metoda je POST.");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=UTF-8");
+            exchange.sendResponseHeaders(200, 0);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+            Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+            Queue<CompletableFuture<BatchNomenclature.Result>> inFlight = new ArrayDeque<>();
+            Queue<String> inFlightSmiles = new ArrayDeque<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String smiles = line.strip();
+                if (smiles.isEmpty())
+                    continue;
+                inFlight.add(batcher.submit(smiles));
+                inFlightSmiles.add(smiles);
+                if (inFlight.size() >= MAX_IN_FLIGHT)
+                    writeJson(writer, getResult(inFlight.remove(), inFlightSmiles.remove()));
+            }
+            while (!inFlight.isEmpty())
+                writeJson(writer, getResult(inFlight.remove(), inFlightSmiles.remove()));
+            writer.flush();
+        }
+    }
+
+    /**
+     * Pocka na vysledek pojmenovani, nejvyse vsak nastavenou dobu.
+     * @param future Budouci vysledek.
+     * @param smiles SMILES retezec, ktery se pojmenovava.
+     * @return Vysledek pojmenovani, pripadne vysledek s chybou, pokud se molekulu nepodarilo vcas pojmenovat.
+     */
+    private BatchNomenclature.Result getResult(CompletableFuture<BatchNomenclature.Result> future, String smiles) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new BatchNomenclature.Result(smiles, null, e);
+        } catch (ExecutionException e) {
+            return new BatchNomenclature.Result(smiles, null, e.getCause() instanceof Exception cause ? cause : e);
+        } catch (TimeoutException e) {
+            return new BatchNomenclature.Result(smiles, null,
+                    new TimeoutException("Pojmenovani nebylo dokonceno do " + timeoutMillis + " ms."));
+        }
+    }
+
+    /**
+     * @param error Vyjimka, ktera pojmenovani prerusila.
+     * @return Stavovy kod odpovedi: 400 pro chybu ve vstupni molekule, 503 pro vyprseni doby cekani, jinak 500.
+     */
+    private static int getStatus(Exception error) {
+        if (error instanceof SMILESParser.InvalidSmilesException || error instanceof Atom.LigancyExceededException
+                || error instanceof Molecule.InvalidLigandConfigurationException)
+            return 400;
+        return error instanceof TimeoutException ? 503 : 500;
+    }
+
+    /**
+     * @param error Vyjimka.
+     * @return Zpravu vyjimky, nebo jeji nazev, pokud zpravu nema.
+     */
+    private static String getMessage(Exception error) {
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    /**
+     * Zapise vysledek jako jeden radek JSON.
+     * @param writer Vystup.
+     * @param result Vysledek pojmenovani.
+     * @throws IOException
+     */
+    private static void writeJson(Writer writer, BatchNomenclature.Result result) throws IOException {
+        writer.write("{\"smiles\":");
+        writeJsonString(writer, result.smiles());
+        if (result.isSuccess()) {
+            writer.write(",\"name\":");
+            writeJsonString(writer, result.name());
+        } else {
+            writer.write(",\"error\":");
+            writeJsonString(writer, getMessage(result.error()));
+        }
+        writer.write("}\n");
+    }
+
+    /**
+     * Zapise retezec jako JSON retezec vcetne uvozovek.
+     * @param writer Vystup.
+     * @param value Retezec.
+     * @throws IOException
+     */
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                writer.write('\\');
+                writer.write(ch);
+            } else if (ch < 0x20) {
+                writer.write(String.format("\\u%04x", (int) ch));
+            } else
+                writer.write(ch);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Odesle odpoved jako prosty text.
+     * @param exchange Pozadavek.
+     * @param status Stavovy kod.
+     * @param text Telo odpovedi.
+     * @throws IOException
+     */
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * @param query Nedekodovana cast adresy za otaznikem, muze byt null.
+     * @param name Nazev parametru.
+     * @return Dekodovanou hodnotu parametru, nebo null, pokud v adrese neni.
+     */
+    private static String getQueryParameter(String query, String name) {
+        if (query == null)
+            return null;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String key = equals == -1 ? parameter : parameter.substring(0, equals);
+            if (URLDecoder.decode(key, StandardCharsets.UTF_8).equals(name))
+                return equals == -1 ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8).strip();
+        }
+        return null;
+    }
+
+    /**
+     * Zastavi sluzbu a seskupovani pozadavku.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        batcher.close();
+        requests.shutdown();
+    }
+
+    /**
+     * Spusti sluzbu.
+     * @param args Port, na kterem sluzba posloucha, a pocet vlaken, ktera pojmenovavaji molekuly. Oba jsou nepovinne.
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        NameBatcher batcher = new NameBatcher(threads, NameBatcher.DEFAULT_MAX_BATCH_SIZE, NameBatcher.DEFAULT_MAX_DELAY_MICROS,
+                new NameCache(1 << 16, 64L << 20));
+        NomenclatureServer server = new NomenclatureServer(new InetSocketAddress(port), batcher);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Sluzba posloucha na portu " + server.getPort() + ".");
+    }
+}
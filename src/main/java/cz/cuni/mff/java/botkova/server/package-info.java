@@ -0,0 +1,9 @@
+package cz.cuni.mff.java.botkova.server;
+/**
+ * Organicke nazvoslovi
+ * Alexandra Botkova, II. rocnik
+ * Letni semestr, 2023/2024
+ * Pokrocile programování v jazyce Java NPRG013
+ *
+ * Tento balicek obsahuje tridy pro spusteni HTTP sluzby, ktera pojmenovava molekuly.
+ */
\ No newline at end of file
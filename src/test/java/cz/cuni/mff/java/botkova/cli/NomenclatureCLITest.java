@@ -0,0 +1,120 @@
+package cz.cuni.mff.java.botkova.cli;
+
+import cz.cuni.mff.java.botkova.nomenclature.LatencyHistogram;
+import cz.cuni.mff.java.botkova.nomenclature.NameCache;
+import cz.cuni.mff.java.botkova.nomenclature.Nomenclature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NomenclatureCLITest {
+    private static final List<String> SMILES = List.of(
+            "C", "CCCCCC", "CCC(CC)CCC", "C=CC#C", "CS", "C(O)C(=O)(O)", "C1CC1", "C1C(O)C(O)C1", "X", "CCC(CC)(CC)CCC"
+    );
+
+    @TempDir
+    Path directory;
+
+    private record Output(int status, String out, String err) {
+    }
+
+    private static Output run(String input, String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = NomenclatureCLI.run(args, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+        return new Output(status, out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8));
+    }
+
+    private static void assertRows(List<String> expectedSmiles, List<String> rows, NameCache cache) throws Exception {
+        assertEquals(expectedSmiles.size(), rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            String[] columns = rows.get(i).split("\t", -1);
+            assertEquals(3, columns.length, rows.get(i));
+            assertEquals(expectedSmiles.get(i), columns[0]);
+            if (columns[0].equals("X")) {
+                assertEquals("", columns[1]);
+                assertTrue(columns[2].startsWith("InvalidFormat"), columns[2]);
+            } else {
+                // S vyrovnavaci pameti se pojmenovava kanonicky zapis molekuly.
+                assertEquals(cache != null ? cache.getName(columns[0]) : Nomenclature.getName(columns[0]), columns[1]);
+                assertEquals("", columns[2]);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"stdin", "file", "file-chunked"})
+    void writesTsvInInputOrder(String source) throws Exception {
+        String input = String.join("\n", SMILES) + "\n\n";
+        Output output;
+        if (source.equals("stdin"))
+            output = run(input, "-t", "3");
+        else {
+            Path path = directory.resolve("molecules.smi");
+            Files.writeString(path, input);
+            output = source.equals("file") ? run("", path.toString()) : run("", "-t", "4", "-c", "8", path.toString());
+        }
+
+        assertEquals(0, output.status, output.err);
+        List<String> lines = output.out.lines().toList();
+        assertEquals("smiles\tname\terror", lines.get(0));
+        assertRows(SMILES, lines.subList(1, lines.size()), null);
+        assertTrue(output.err.contains("Pojmenovano 10 molekul"), output.err);
+        assertTrue(output.err.contains("p50"), output.err);
+        assertTrue(output.err.contains("Prvni nazev"), output.err);
+        assertTrue(output.err.contains("1  InvalidFormat"), output.err);
+    }
+
+    @Test
+    void writesEveryResultUnordered() throws Exception {
+        Path path = directory.resolve("molecules.smi");
+        Files.writeString(path, String.join("\n", SMILES));
+        Path tsv = directory.resolve("names.tsv");
+        Output output = run(String.join("\n", SMILES), "--unordered", "--cache", "4", "-c", "16", "-o", tsv.toString(), path.toString(), "-");
+
+        assertEquals(0, output.status, output.err);
+        assertEquals("", output.out);
+        List<String> lines = Files.readAllLines(tsv);
+        List<String> rows = new ArrayList<>(lines.subList(1, lines.size()));
+        rows.sort(Comparator.comparing(row -> row.substring(0, row.indexOf('\t'))));
+        List<String> expected = new ArrayList<>(SMILES);
+        expected.addAll(SMILES);
+        Collections.sort(expected);
+        assertRows(expected, rows, new NameCache(4, Long.MAX_VALUE));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertEquals(2, run("", "--threads", "0").status);
+        assertEquals(2, run("", "--unknown").status);
+        assertEquals(2, run("", "-o").status);
+        assertEquals(1, run("", directory.resolve("missing.smi").toString()).status);
+    }
+
+    @Test
+    void latencyHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (long value = 1; value <= 100_000; value++)
+            histogram.record(value * 1000);
+        assertEquals(100_000, histogram.getCount());
+        // Relativni chyba je nejvyse 1/64.
+        assertEquals(50_000_000, histogram.getPercentile(50), 50_000_000 / 64.0);
+        assertEquals(99_000_000, histogram.getPercentile(99), 99_000_000 / 64.0);
+        assertEquals(100_000_000, histogram.getMax(), 100_000_000 / 64.0);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+    }
+}
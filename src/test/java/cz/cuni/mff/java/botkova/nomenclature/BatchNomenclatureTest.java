@@ -0,0 +1,100 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchNomenclatureTest {
+    private static final List<String> SMILES = List.of(
+            "C", "CCCCCC", "CCC(CC)CCC", "C=CC#C", "CS", "C(O)C(=O)(O)", "C1CC1", "C1C(O)C(O)C1", "X", "CCC(CC)(CC)CCC"
+    );
+
+    @Test
+    void getNamesKeepsInputOrder() throws Exception {
+        try (BatchNomenclature batch = new BatchNomenclature(4, 3, true)) {
+            List<BatchNomenclature.Result> results = new ArrayList<>();
+            batch.getNames(SMILES.iterator()).forEachRemaining(results::add);
+
+            assertEquals(SMILES.size(), results.size());
+            for (int i = 0; i < SMILES.size(); i++) {
+                BatchNomenclature.Result result = results.get(i);
+                assertEquals(SMILES.get(i), result.smiles());
+                if (SMILES.get(i).equals("X")) {
+                    assertFalse(result.isSuccess());
+                    assertInstanceOf(SMILESParser.InvalidSmilesException.class, result.error());
+                } else {
+                    assertTrue(result.isSuccess());
+                    assertEquals(Nomenclature.getName(SMILES.get(i)), result.name());
+                }
+            }
+        }
+    }
+
+    @Test
+    void getNamesUnorderedReturnsEveryInput() {
+        try (BatchNomenclature batch = new BatchNomenclature(4, 2, false);
+             Stream<BatchNomenclature.Result> results = batch.getNames(SMILES.stream())) {
+            List<String> inputs = results.map(BatchNomenclature.Result::smiles).sorted().collect(Collectors.toList());
+            List<String> expected = new ArrayList<>(SMILES);
+            Collections.sort(expected);
+            assertEquals(expected, inputs);
+        }
+    }
+
+    @Test
+    void getNamesReadsInputLazily() {
+        int maxInFlight = 3;
+        int[] consumed = {0};
+        Iterator<String> input = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public String next() {
+                consumed[0]++;
+                return "CCC";
+            }
+        };
+        try (BatchNomenclature batch = new BatchNomenclature(2, maxInFlight, true)) {
+            Iterator<BatchNomenclature.Result> results = batch.getNames(input);
+            for (int i = 0; i < 10; i++) {
+                assertEquals("propan", results.next().name());
+                assertTrue(consumed[0] <= i + 1 + maxInFlight);
+            }
+        }
+    }
+
+    @Test
+    void interruptedNextKeepsResult() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        NameCache cache = new NameCache(16, 1 << 20) {
+            @Override
+            public String getName(CharSequence smiles) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException, Molecule.InvalidLigandConfigurationException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.getName(smiles);
+            }
+        };
+        try (BatchNomenclature batch = new BatchNomenclature(1, 2, true, cache)) {
+            Iterator<BatchNomenclature.Result> results = batch.getNames(List.of("CCC", "CCCC").iterator());
+            Thread.currentThread().interrupt();
+            assertThrows(RuntimeException.class, results::next);
+            assertTrue(Thread.interrupted());
+
+            release.countDown();
+            assertEquals("propan", results.next().name());
+            assertEquals("butan", results.next().name());
+            assertFalse(results.hasNext());
+        }
+    }
+}
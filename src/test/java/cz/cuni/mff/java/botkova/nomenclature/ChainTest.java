@@ -2,6 +2,11 @@ package cz.cuni.mff.java.botkova.nomenclature;
 
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -47,4 +52,78 @@ class ChainTest {
         Chain chain = new Chain(molecule);
         assertEquals(expected, chain.atoms.toString());
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @ValueSource(strings = {"CC(C(C)CC)CCCCCC", "C=C(CCCCCCC)C=C", "CC1C(O)CC(CC(C)CC)CC1C", "CCC(CC)C=C", "C(N)CCC(O)(=O)", "C(C)C(C)(C)CC(C)C#C"})
+    void getPathParallelMatchesSequential(String smiles) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException, Molecule.InvalidLigandConfigurationException {
+        Molecule sequential = SMILESParser.parseMolecule(smiles);
+        sequential.identifyStructures();
+        Molecule parallel = SMILESParser.parseMolecule(smiles);
+        parallel.identifyStructures();
+        int threshold = Filter.getParallelThreshold();
+        try {
+            List<Atom> expected = new Chain(sequential).atoms;
+            Filter.setParallelThreshold(1);
+            assertEquals(expected.toString(), new Chain(parallel).atoms.toString());
+        } finally {
+            Filter.setParallelThreshold(threshold);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "CC(C(C)CC)CCCCCC", "C=C(CCCCCCC)C=C", "CC1C(O)CC(CC(C)CC)CC1C", "C(N)CCC(O)(=O)", "C(C)C(C)(C)CC(C)C#C",
+            "C(C(O)C)(C(O)C)(C(O)C)C(O)C", "C(C(C=C)C=C)(C(C=C)C=C)C(C=C)C=C", "C1CC(C2CCCCC2)CC(C3CCCC3)C1",
+            "C(CC(O)CC)(CC(O)CC)CC(O)CC", "CC(C#C)(C#C)C(C#C)(C#C)C"
+    })
+    void getPathPrunedMatchesUnpruned(String smiles) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException, Molecule.InvalidLigandConfigurationException {
+        Molecule molecule = SMILESParser.parseMolecule(smiles);
+        molecule.identifyStructures();
+        try {
+            Chain.setPruning(false);
+            String expected = new Chain(molecule).atoms.toString();
+            Chain.setPruning(true);
+            assertEquals(expected, new Chain(molecule).atoms.toString());
+        } finally {
+            Chain.setPruning(true);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 5, 8, 13, 21, 34, 55, 89})
+    void getPathInTreeMatchesFilter(int seed) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException, Molecule.InvalidLigandConfigurationException {
+        // Nahodny rozvetveny alkan, kde se kazdy uhlik navaze na nahodny uhlik s volnou vazbou.
+        Random random = new Random(seed);
+        List<List<Integer>> children = new ArrayList<>();
+        children.add(new ArrayList<>());
+        for (int atom = 1; atom < 80; atom++) {
+            int parent;
+            do {
+                parent = random.nextInt(atom);
+            } while (children.get(parent).size() == (parent == 0 ? 4 : 3));
+            children.get(parent).add(atom);
+            children.add(new ArrayList<>());
+        }
+        StringBuilder smiles = new StringBuilder();
+        writeTree(0, children, smiles);
+
+        Molecule molecule = SMILESParser.parseMolecule(smiles);
+        molecule.identifyStructures();
+        Chain chain = new Chain(molecule);
+        assertEquals(new Chain().getCandidatePaths(molecule).filter(), chain.atoms);
+    }
+
+    private static void writeTree(int atom, List<List<Integer>> children, StringBuilder smiles) {
+        smiles.append('C');
+        List<Integer> atomChildren = children.get(atom);
+        for (int i = 0; i < atomChildren.size(); i++) {
+            if (i < atomChildren.size() - 1) {
+                smiles.append('(');
+                writeTree(atomChildren.get(i), children, smiles);
+                smiles.append(')');
+            } else {
+                writeTree(atomChildren.get(i), children, smiles);
+            }
+        }
+    }
+}
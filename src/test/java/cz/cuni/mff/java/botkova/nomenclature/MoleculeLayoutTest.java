@@ -0,0 +1,68 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoleculeLayoutTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "CCCCCC",
+            "CC(C)(C)CC",
+            "CC#CC",
+            "C=C=CC",
+            "CCC(C)CC=O",
+            "C1CCCCC1",
+            "CC1CCC(CCO)CC1",
+            "C1CCC2CCCCC2C1",
+            "C1CCC2C(C1)CCC1CCCCC21",
+            "C1CCC2(C1)CCC2",
+            "C1CC2CCC1C2",
+            "C1CCOC1"
+    })
+    void unitBondsWithoutOverlaps(String smiles) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException {
+        assertLayout(SMILESParser.parseMolecule(smiles));
+    }
+
+    @Test
+    void chainIsZigZag() throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException {
+        MoleculeLayout layout = new MoleculeLayout(SMILESParser.parseMolecule("CCCC"));
+        // Obe koncove vazby jsou rovnobezne, retezec se zataci stridave na obe strany.
+        assertEquals(layout.x[1] - layout.x[0], layout.x[3] - layout.x[2], 1e-9);
+        assertEquals(layout.y[1] - layout.y[0], layout.y[3] - layout.y[2], 1e-9);
+        assertEquals(Math.sqrt(3), Math.hypot(layout.x[2] - layout.x[0], layout.y[2] - layout.y[0]), 1e-9);
+    }
+
+    @Test
+    void largeMolecule() throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException {
+        StringBuilder smiles = new StringBuilder("C");
+        for (int i = 0; i < 500; i++)
+            smiles.append("C1CCC(CC1)");
+        Molecule molecule = SMILESParser.parseMolecule(smiles);
+        assertLayout(molecule);
+    }
+
+    /**
+     * Vazby nakreslene molekuly maji jednotkovou delku a zadne dva atomy nejsou blize nez polovina delky vazby.
+     * Cyklus s heteroatomem neni cyklem uhlikove kostry a kresli se jako retezec, vazba na heteroatom pak muze byt delsi.
+     */
+    private static void assertLayout(Molecule molecule) {
+        MoleculeLayout layout = new MoleculeLayout(molecule);
+        int size = molecule.atoms.length;
+        for (int atom = 0; atom < size; atom++) {
+            for (int bond = molecule.bondOffsets[atom]; bond < molecule.bondOffsets[atom + 1]; bond++) {
+                int ligand = molecule.bondTargets[bond];
+                double length = Math.hypot(layout.x[atom] - layout.x[ligand], layout.y[atom] - layout.y[ligand]);
+                if (molecule.elements[atom] == 'C' && molecule.elements[ligand] == 'C')
+                    assertEquals(1, length, 1e-9);
+                else
+                    assertTrue(length >= 1 - 1e-9);
+            }
+            for (int other = atom + 1; other < size; other++)
+                assertTrue(Math.hypot(layout.x[atom] - layout.x[other], layout.y[atom] - layout.y[other]) > 0.5);
+        }
+    }
+}
@@ -2,8 +2,11 @@ package cz.cuni.mff.java.botkova.nomenclature;
 
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -102,5 +105,100 @@ class MoleculeTest {
     void getAtomsWithMultipleBonds(String expected, String actual) {
         assertEquals(expected, actual);
     }
-}
 
+    static Stream<Arguments> objectProvider4() throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException, Molecule.InvalidLigandConfigurationException {
+        Molecule m1 = SMILESParser.parseMolecule("C(=O)(O)CC=C");
+        m1.identifyStructures();
+        Molecule m2 = SMILESParser.parseMolecule("CC(CO)C");
+        m2.identifyStructures();
+        Molecule m3 = m2.getSideChain(2, 1);
+
+        return Stream.of(
+                Arguments.of("[67, 79, 79, 67, 67, 67]", Arrays.toString(m1.elements)),
+                Arguments.of("[0, 3, 4, 5, 7, 9, 10]", Arrays.toString(m1.bondOffsets)),
+                Arguments.of("[1, 2, 3, 0, 0, 0, 4, 3, 5, 4]", Arrays.toString(m1.bondTargets)),
+                Arguments.of("[2, 1, 1, 2, 1, 1, 1, 1, 2, 2]", Arrays.toString(m1.bondOrders)),
+                Arguments.of("[0, 0, 1, 2, 1, 2]", Arrays.toString(m1.hydrogens)),
+                Arguments.of("[1, 0, 0, 0, 0, 0]", Arrays.toString(m1.seniorGroupMasks)),
+                Arguments.of("[C-3, O-2]", Arrays.toString(m3.atoms)),
+                Arguments.of("[3, 1]", Arrays.toString(m3.hydrogens))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("objectProvider4")
+    void compact(String expected, String actual) {
+        assertEquals(expected, actual);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "C(=O)(O)CC=C, 4",
+            "C1CCC(C(=O)O)CC1CS(O)(O)(O), 8",
+            "CC(N)C(C2CC2)=CC(S)C#C, 5",
+            "C(O)1=CC(N(O)(O))C(O)C1C(C)C, 6"
+    })
+    void features(String smiles, int sideChainStart) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException, Molecule.InvalidLigandConfigurationException {
+        Molecule molecule = SMILESParser.parseMolecule(smiles);
+        molecule.identifyStructures();
+        int parent = molecule.bondTargets[molecule.bondOffsets[sideChainStart]];
+        Molecule sideChain = molecule.getSideChain(sideChainStart, parent);
+        sideChain.identifyStructures();
+        for (Molecule m : new Molecule[]{molecule, sideChain}) {
+            for (int atom = 0; atom < m.atoms.length; atom++) {
+                long features = m.features[atom];
+                assertEquals(m.hydrogens[atom], Molecule.getFeature(features, Molecule.HYDROGENS));
+                assertEquals(m.countBondsTo(atom, 'O'), Molecule.getFeature(features, Molecule.OXYGENS));
+                assertEquals(m.countBondsTo(atom, 'N'), Molecule.getFeature(features, Molecule.NITROGENS));
+                assertEquals(m.countBondsTo(atom, 'S'), Molecule.getFeature(features, Molecule.SULFURS));
+                assertEquals(m.numOfSeniorGroups[atom], Molecule.getFeature(features, Molecule.SENIOR_GROUPS));
+                assertEquals(m.seniorGroupMasks[atom], Molecule.getFeature(features, Molecule.SENIOR_GROUP_MASK));
+                assertEquals(m.hasMultipleBond[atom] ? 1 : 0, Molecule.getFeature(features, Molecule.MULTIPLE_BOND));
+                int carbonsInCycle = 0;
+                for (int bond = m.bondOffsets[atom]; bond < m.bondOffsets[atom + 1]; bond++) {
+                    int ligand = m.bondTargets[bond];
+                    if (m.elements[ligand] == 'C' && m.isPartOfCycle[ligand])
+                        carbonsInCycle += m.bondOrders[bond];
+                }
+                assertEquals(carbonsInCycle, Molecule.getFeature(features, Molecule.CARBONS_IN_CYCLE));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "C, 10000, 10000",
+            "C, 100000, 100000",
+            "C(O), 50000, 50000",
+            "C=C, 10000, 20000",
+            "C(C), 50000, 50002",
+            "C1, 100000, 100000"
+    })
+    void traverseLargeMolecule(String unit, int count, int expectedChainLength) throws Throwable {
+        // Pruchody nesmi zaviset na velikosti zasobniku, proto je spoustime ve vlakne s malym zasobnikem.
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                // Jednotka C1 znaci cyklus z daneho poctu uhliku.
+                String smiles = unit.equals("C1") ? "C1" + "C".repeat(count - 2) + "C1" : unit.repeat(count);
+                Molecule molecule = SMILESParser.parseMolecule(smiles);
+                molecule.identifyStructures();
+                int size = molecule.atoms.length;
+                // Kazdy atom krome startu otevira v retezcove reprezentaci jednu zavorku.
+                assertEquals(size - 1, molecule.DFS().chars().filter(c -> c == '(').count());
+                if (unit.equals("C(O)"))
+                    assertEquals(count, molecule.atomsWithSeniorGroups.get("-OH").size());
+                if (unit.equals("C1"))
+                    assertEquals(size, molecule.maxLengthOfCycle);
+                assertEquals(unit.equals("C1") ? 1 : 0, molecule.rings.smallestRings.size());
+                assertEquals(expectedChainLength, new Chain(molecule).atoms.size());
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        }, "small-stack", 1 << 18);
+        thread.start();
+        thread.join();
+        if (error.get() != null)
+            throw error.get();
+    }
+}
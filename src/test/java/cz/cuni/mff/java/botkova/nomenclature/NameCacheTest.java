@@ -0,0 +1,63 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameCacheTest {
+
+    @Test
+    void getNameCountsHitsAndMisses() throws Exception {
+        NameCache cache = new NameCache(100, 1 << 20);
+        assertEquals("ethan-1-ol", cache.getName("CCO"));
+        assertEquals("ethan-1-ol", cache.getName("C(O)C"));
+        assertEquals("ethan-1-ol", cache.getName("CCO"));
+        assertEquals("propan", cache.getName("CCC"));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void getNameMatchesUncachedNames() throws Exception {
+        List<String> corpus = List.of(
+                "C(=O)(CC(=O)C(C(N(O)(O)))CC)C(C)C", "CC(=O)CC(C(CN(O)O)CC)C(=O)C(C)C",
+                "CCCCCC", "CCC(CC)CCC", "CC(C)(C)CC", "C=CC#C", "C#CC=C", "CS", "C(O)C(=O)(O)", "C(C(=O)O)O",
+                "CCC(CC)(CC)CCC", "C(C)(C)CC(C)C", "C1CC1", "C1C(O)C(O)C1", "CC1CCC(C)CC1", "C1C(C)CCC(C)C1",
+                "C1CCC2CCCCC2C1", "C1CCC2C(C1)CCC1CCCCC21", "CC(N)C(=O)O", "C(N)(C)C(=O)O"
+        );
+        NameCache cache = new NameCache(100, 1 << 20);
+        // Druhy pruchod vraci nazvy z pameti.
+        for (int pass = 0; pass < 2; pass++) {
+            for (String smiles : corpus)
+                assertEquals(Nomenclature.getName(smiles), cache.getName(smiles), smiles);
+        }
+        assertEquals(corpus.size(), cache.getHits());
+
+        NameCache parsedCache = new NameCache(100, 1 << 20);
+        for (String smiles : corpus)
+            assertEquals(Nomenclature.getName(smiles), parsedCache.getName(smiles, SMILESParser.parseMolecule(smiles)), smiles);
+    }
+
+    @Test
+    void getNameEvictsLeastRecentlyUsed() throws Exception {
+        NameCache cache = new NameCache(2, 1 << 20);
+        cache.getName("CC");
+        cache.getName("CCC");
+        cache.getName("CC");
+        cache.getName("CCCC");
+        assertEquals(2, cache.size());
+        cache.getName("CC");
+        cache.getName("CCC");
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+
+        NameCache smallCache = new NameCache(100, 300);
+        for (int i = 1; i < 10; i++)
+            smallCache.getName("C".repeat(i));
+        assertTrue(smallCache.getBytes() <= 300);
+        assertTrue(smallCache.size() < 9);
+    }
+}
@@ -2,6 +2,13 @@ package cz.cuni.mff.java.botkova.nomenclature;
 
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -48,4 +55,122 @@ class NomenclatureTest {
         String actual = Nomenclature.getName(smiles);
         assertEquals(expected, actual);
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @CsvSource({
+            "'CCCC(C(C)C)C(C(C)C)CCCC', '4,5-di(propyl)-nonan'",
+            "'CCCC(C(C)C)C(C(C)C)C(CC(C)C)CCCC', '6-(2-(methyl)-propyl)-4,5-di(propyl)-dekan'",
+            "'CCCCC(C(CC)CC)CCC(C(CC)CC)CCCCC', '5,8-di(pentyl)-tridekan'",
+            "'CC(C)CC(CC(C)C)CC(C)C', '4-(2-(methyl)-propyl)-2,6-di(methyl)-heptan'"
+    })
+    void getNameWithRepeatedSubstituents(String smiles, String expected) throws SMILESParser.InvalidSmilesException, Molecule.InvalidLigandConfigurationException, Atom.LigancyExceededException {
+        // Pri druhem pojmenovani se nazvy vedlejsich retezcu berou z pameti.
+        assertEquals(expected, Nomenclature.getName(smiles));
+        assertEquals(expected, Nomenclature.getName(smiles));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "CC(C)(C)C(C(C)C)(CC(C)(C)C)CC(CC)(CC)C(C)(C)CCC(C)C",
+            "CCC(CC(O)(=O))(CC)C(CC(C)C)C(C(C)C)CC(C)(C)CCC",
+            "CC(C(C)CC)CCCCCC"
+    })
+    void getNameWithoutSubstituentCaching(String smiles) throws Exception {
+        try {
+            Nomenclature.setSubstituentCaching(false);
+            String expected = Nomenclature.getName(smiles);
+            Nomenclature.setSubstituentCaching(true);
+            Nomenclature.clearSubstituentNames();
+            assertEquals(expected, Nomenclature.getName(smiles));
+            // Podruhe se nazvy vedlejsich retezcu berou z pameti.
+            assertEquals(expected, Nomenclature.getName(smiles));
+        } finally {
+            Nomenclature.setSubstituentCaching(true);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "CC(C)(C)C(C(C)C)(CC(C)(C)C)CC(CC)(CC)C(C)(C)CCC(C)C",
+            "CCC(CC(O)(=O))(CC)C(CC(C)C)C(C(C)C)CC(C)(C)CCC",
+            "C1(O)C=CC(CC(C)CO)CC(C(C)(C)C)C1"
+    })
+    void getNameConcurrently(String smiles) throws Exception {
+        int threshold = Nomenclature.getParallelThreshold();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Nomenclature.setParallelThreshold(Integer.MAX_VALUE);
+            String expected = Nomenclature.getName(smiles);
+            // Vedlejsi retezce pojmenovavame paralelne i pro male molekuly, aby se paralelni cast opravdu provedla.
+            Nomenclature.setParallelThreshold(1);
+            List<Future<String>> names = new ArrayList<>();
+            for (int i = 0; i < 2000; i++)
+                names.add(executor.submit(() -> Nomenclature.getName(smiles)));
+            for (Future<String> name : names)
+                assertEquals(expected, name.get());
+        } finally {
+            executor.shutdown();
+            Nomenclature.setParallelThreshold(threshold);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "CCC(CC(O)(=O))(CC)C(CC(C)C)C(C(C)C)CC(C)(C)CCC",
+            "C1(O)C=CC(CC(C)CO)CC(C(C)(C)C)C1",
+            "C(O)C(=O)(O)"
+    })
+    void getNameOfSharedMolecule(String smiles) throws Exception {
+        String expected = Nomenclature.getName(smiles);
+        Molecule molecule = SMILESParser.parseMolecule(smiles);
+        molecule.identifyStructures();
+        String seniorGroups = molecule.atomsWithSeniorGroups.toString();
+        List<Atom> startsOfCycles = new ArrayList<>(molecule.startsOfTheLongestCycles);
+        List<Atom> multipleBonds = new ArrayList<>(molecule.atomsWithMultipleBonds);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // Jedna nactena molekula se pojmenovava opakovane a soubezne.
+            List<Future<String>> names = new ArrayList<>();
+            for (int i = 0; i < 500; i++)
+                names.add(executor.submit(() -> Nomenclature.getName(molecule)));
+            for (Future<String> name : names)
+                assertEquals(expected, name.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(seniorGroups, molecule.atomsWithSeniorGroups.toString());
+        assertEquals(startsOfCycles, molecule.startsOfTheLongestCycles);
+        assertEquals(multipleBonds, molecule.atomsWithMultipleBonds);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "'CCC(C)CC(C)CC', 'LONGEST_PATH_IN_TREE'",
+            "'CCC(CC(O)(=O))(CC)C(CC(C)C)C(C(C)C)CC(C)(C)CCC', 'FILTER_MULTIPLE_BONDS'",
+            "'C1(O)C=CC(CC(C)CO)CC(C(C)(C)C)C1', 'FILTER_ATOMS'"
+    })
+    void getNameRecordsStages(String smiles, Metrics.Stage chainStage) throws Exception {
+        HistogramMetrics metrics = new HistogramMetrics();
+        try {
+            Nomenclature.setMetrics(metrics);
+            Molecule molecule = SMILESParser.parseMolecule(smiles);
+            Nomenclature.getName(molecule);
+            Nomenclature.setMetrics(Metrics.NONE);
+
+            assertEquals(1, metrics.get(Metrics.Stage.PARSE_SMILES).nanos.getCount());
+            assertNotNull(metrics.get(Metrics.Stage.PARSE_SMILES, HistogramMetrics.getSizeClass(molecule.numberOfAtoms)));
+            assertEquals(1, metrics.get(Metrics.Stage.IDENTIFY_CYCLES).nanos.getCount());
+            assertTrue(metrics.get(chainStage).nanos.getCount() >= 1);
+            // Hlavni retezec a kazdy vedlejsi retezec, jehoz nazev neni zapamatovany, se pojmenuje samostatne.
+            long names = metrics.get(Metrics.Stage.NAME).nanos.getCount();
+            assertTrue(names >= 1);
+            assertEquals(names, metrics.get(Metrics.Stage.IDENTIFY_SENIOR_GROUPS).nanos.getCount());
+            assertEquals(names, metrics.get(Metrics.Stage.PARSE_CHAIN).nanos.getCount());
+            assertEquals(names, metrics.get(Metrics.Stage.SIDE_CHAIN_NAMES).nanos.getCount());
+            assertTrue(metrics.toString().contains("PARSE_SMILES"));
+        } finally {
+            Nomenclature.setMetrics(Metrics.NONE);
+        }
+    }
+}
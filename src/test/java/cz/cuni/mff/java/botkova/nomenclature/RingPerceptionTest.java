@@ -0,0 +1,40 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingPerceptionTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+            "CCCC; []; 0",
+            "C1CCCCC1; [6]; 6",
+            "C1CCOC1; []; 0",
+            "C1CCCCC1C2CCCCC2; [6, 6]; 12",
+            "C1CCC2(C1)CCC2; [4, 5]; 8",
+            "C1CCC2CCCCC2C1; [6, 6]; 10",
+            "C1CC2CCC1C2; [5, 5]; 7",
+            "C1C2CC3CC1CC(C2)C3; [6, 6, 6]; 10",
+            "C12C3C4C1C5C2C3C45; [4, 4, 4, 4, 4]; 8"
+    })
+    void findSmallestRings(String smiles, String expectedSizes, int expectedInRing) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException {
+        Molecule molecule = SMILESParser.parseMolecule(smiles);
+        molecule.compact();
+        RingPerception rings = new RingPerception(molecule);
+
+        assertEquals(expectedSizes, Arrays.toString(rings.smallestRings.stream().mapToInt(ring -> ring.length).toArray()));
+        int inRing = 0;
+        for (boolean isInRing : rings.isInRing)
+            inRing += isInRing ? 1 : 0;
+        assertEquals(expectedInRing, inRing);
+        // Po sobe jdouci atomy cyklu musi byt navazane.
+        for (int[] ring : rings.smallestRings) {
+            for (int i = 0; i < ring.length; i++)
+                assertTrue(molecule.getBondOrder(ring[i], ring[(i + 1) % ring.length]) > 0);
+        }
+    }
+}
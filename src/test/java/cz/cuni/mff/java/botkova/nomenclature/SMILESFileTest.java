@@ -0,0 +1,79 @@
+package cz.cuni.mff.java.botkova.nomenclature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SMILESFileTest {
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 64, SMILESFile.DEFAULT_CHUNK_SIZE})
+    void getEntriesKeepsFileOrder(int chunkSize) throws Exception {
+        List<String> smiles = IntStream.rangeClosed(1, 200).mapToObj(i -> "C".repeat(1 + i % 12) + (i % 3 == 0 ? "O" : "")).toList();
+        Path path = directory.resolve("molecules.smi");
+        Files.writeString(path, IntStream.range(0, smiles.size()).mapToObj(i -> smiles.get(i) + "\tm" + i).collect(Collectors.joining("\n")));
+
+        try (SMILESFile file = new SMILESFile(path, chunkSize)) {
+            List<SMILESFile.Entry> entries = file.getEntries().toList();
+            assertEquals(smiles.size(), entries.size());
+            for (int i = 0; i < smiles.size(); i++) {
+                assertEquals(smiles.get(i), entries.get(i).getSmiles());
+                assertEquals("m" + i, entries.get(i).id);
+                assertEquals(Nomenclature.getName(smiles.get(i)), Nomenclature.getName(entries.get(i).molecule));
+            }
+        }
+    }
+
+    @Test
+    void smallFileIsSplitForEveryThread() throws Exception {
+        List<String> smiles = IntStream.rangeClosed(1, 500).mapToObj(i -> "C".repeat(1 + i % 9) + (i % 4 == 0 ? "O" : "")).toList();
+        Path path = directory.resolve("molecules.smi");
+        Files.writeString(path, String.join("\n", smiles) + "\n");
+
+        ForkJoinPool pool = new ForkJoinPool(16);
+        try (SMILESFile file = new SMILESFile(path)) {
+            assertTrue(file.split(1).size() > 1);
+            assertTrue(file.split(16).size() > file.split(1).size());
+            // Proud spusteny ve fondu se rozdeli podle poctu jeho vlaken.
+            List<String> read = pool.submit(() -> file.getEntries().map(SMILESFile.Entry::getSmiles).toList()).get();
+            assertEquals(smiles, read);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void getNamesReportsInvalidLines() throws Exception {
+        Path path = directory.resolve("molecules.smi");
+        Files.writeString(path, "CCO ethanol\r\n\r\nX\nC=C  ethen  \n \tCCC propan\n  \n");
+
+        try (SMILESFile file = new SMILESFile(path, 4)) {
+            List<SMILESFile.Entry> entries = file.getEntries().toList();
+            assertEquals(List.of(0L, 15L, 17L, 30L), entries.stream().map(entry -> entry.position).toList());
+            assertEquals("ethanol", entries.get(0).id);
+            assertNull(entries.get(1).id);
+            assertEquals("ethen", entries.get(2).id);
+            assertEquals("propan", entries.get(3).id);
+
+            List<BatchNomenclature.Result> results = file.getNames().toList();
+            assertEquals("ethan-1-ol", results.get(0).name());
+            assertInstanceOf(SMILESParser.InvalidSmilesException.class, results.get(1).error());
+            assertEquals("X", results.get(1).smiles());
+            assertEquals("eth-1-en", results.get(2).name());
+            assertEquals("CCC", results.get(3).smiles());
+            assertEquals("propan", results.get(3).name());
+        }
+    }
+}
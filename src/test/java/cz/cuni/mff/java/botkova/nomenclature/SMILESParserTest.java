@@ -2,6 +2,10 @@ package cz.cuni.mff.java.botkova.nomenclature;
 
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -35,4 +39,25 @@ class SMILESParserTest {
         String moleculeRepresentation = molecule.DFS();
         assertEquals(expectedMolecularRepresentation, moleculeRepresentation);
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @CsvSource({
+            "'C', 'CH4'",
+            "'C(C)C', 'CH2(CH3)(CH3)'",
+            "'C#CC(C=C(C)C)CC#C', 'CH1(C(CH1(CH1(C(CH3)(CH3)))(CH2(C(CH1)))))'",
+            "'C(=O)(O)CC(=O)(O)', 'C(O)(OH1)(CH2(C(O)(OH1)))'",
+    })
+    void parseMoleculeFromBuffer(String smiles, String expectedMolecularRepresentation) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException {
+        // Retezec je uprostred bufferu, cte se pouze dany usek.
+        ByteBuffer buffer = ByteBuffer.wrap(("CC\n" + smiles + "\tid\n").getBytes(StandardCharsets.US_ASCII));
+        Molecule molecule = SMILESParser.parseMolecule(buffer, 3, 3 + smiles.length());
+        assertEquals(expectedMolecularRepresentation, molecule.DFS());
+        assertEquals(0, buffer.position());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "O", "C)", "C()", "C((C))", "C1(1"})
+    void parseInvalidFormat(String smiles) {
+        assertThrows(SMILESParser.InvalidSmilesException.InvalidFormat.class, () -> SMILESParser.parseMolecule(smiles));
+    }
+}
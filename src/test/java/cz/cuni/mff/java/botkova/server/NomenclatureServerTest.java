@@ -0,0 +1,161 @@
+package cz.cuni.mff.java.botkova.server;
+
+import cz.cuni.mff.java.botkova.nomenclature.Atom;
+import cz.cuni.mff.java.botkova.nomenclature.BatchNomenclature;
+import cz.cuni.mff.java.botkova.nomenclature.Molecule;
+import cz.cuni.mff.java.botkova.nomenclature.NameCache;
+import cz.cuni.mff.java.botkova.nomenclature.Nomenclature;
+import cz.cuni.mff.java.botkova.nomenclature.SMILESParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NomenclatureServerTest {
+    private static final List<String> SMILES = List.of(
+            "C", "CCCCCC", "CCC(CC)CCC", "C=CC#C", "CS", "C(O)C(=O)(O)", "C1CC1", "C1C(O)C(O)C1", "X", "CCC(CC)(CC)CCC"
+    );
+
+    private NomenclatureServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new NomenclatureServer(new InetSocketAddress("localhost", 0), new NameBatcher(4, 8, 1000, null));
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    private URI getUri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"CCC(CC)CCC", "C=CC#C", "C(O)C(=O)(O)", "C1C(O)C(O)C1"})
+    void getName(String smiles) throws Exception {
+        String expected = Nomenclature.getName(smiles) + "\n";
+        HttpResponse<String> get = client.send(HttpRequest.newBuilder(getUri("/name?smiles=" + URLEncoder.encode(smiles, StandardCharsets.UTF_8))).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, get.statusCode());
+        assertEquals(expected, get.body());
+
+        HttpResponse<String> post = client.send(HttpRequest.newBuilder(getUri("/name")).POST(HttpRequest.BodyPublishers.ofString(smiles)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, post.statusCode());
+        assertEquals(expected, post.body());
+    }
+
+    @Test
+    void getNameOfInvalidMolecule() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(getUri("/name?smiles=X")).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+        response = client.send(HttpRequest.newBuilder(getUri("/name")).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+        response = client.send(HttpRequest.newBuilder(getUri("/batch")).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, response.statusCode());
+    }
+
+    @Test
+    void getNamesInBatch() throws Exception {
+        // Vic radku, nez se najednou pojmenovava, aby se vysledky odesilaly prubezne.
+        StringBuilder body = new StringBuilder();
+        List<String> input = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            for (String smiles : SMILES) {
+                body.append(smiles).append(i % 2 == 0 ? "\n" : "\r\n\n");
+                input.add(smiles);
+            }
+        }
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(getUri("/batch")).POST(HttpRequest.BodyPublishers.ofString(body.toString())).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        String[] lines = response.body().split("\n");
+        assertEquals(input.size(), lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            String smiles = input.get(i);
+            if (smiles.equals("X"))
+                assertTrue(lines[i].startsWith("{\"smiles\":\"X\",\"error\":\""), lines[i]);
+            else
+                assertEquals("{\"smiles\":\"" + smiles + "\",\"name\":\"" + Nomenclature.getName(smiles) + "\"}", lines[i]);
+        }
+    }
+
+    @Test
+    void batcherGroupsConcurrentRequests() throws Exception {
+        try (NameBatcher batcher = new NameBatcher(2, 4, 100_000, null)) {
+            List<CompletableFuture<BatchNomenclature.Result>> results = new ArrayList<>();
+            for (int i = 0; i < 50; i++)
+                results.add(batcher.submit(SMILES.get(i % SMILES.size())));
+            for (int i = 0; i < results.size(); i++) {
+                BatchNomenclature.Result result = results.get(i).get();
+                assertEquals(SMILES.get(i % SMILES.size()), result.smiles());
+                assertEquals(!result.smiles().equals("X"), result.isSuccess());
+            }
+        }
+    }
+
+    @Test
+    void batcherFailsRestOfPartOnError() throws Exception {
+        NameCache cache = new NameCache(16, 1 << 20) {
+            @Override
+            public String getName(CharSequence smiles) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException, Molecule.InvalidLigandConfigurationException {
+                if (smiles.toString().equals("CS"))
+                    throw new AssertionError("CS");
+                return super.getName(smiles);
+            }
+        };
+        // Jedno vlakno a davka o trech pozadavcich, takze vsechny tri pojmenovava tataz cast davky.
+        try (NameBatcher batcher = new NameBatcher(1, 3, 10_000_000, cache)) {
+            CompletableFuture<BatchNomenclature.Result> first = batcher.submit("C");
+            CompletableFuture<BatchNomenclature.Result> failing = batcher.submit("CS");
+            CompletableFuture<BatchNomenclature.Result> rest = batcher.submit("CCC");
+            assertEquals("methan", first.get(10, TimeUnit.SECONDS).name());
+            ExecutionException error = assertThrows(ExecutionException.class, () -> failing.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(AssertionError.class, error.getCause());
+            error = assertThrows(ExecutionException.class, () -> rest.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(AssertionError.class, error.getCause());
+        }
+    }
+
+    @Test
+    void getNameTimesOut() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        NameCache cache = new NameCache(16, 1 << 20) {
+            @Override
+            public String getName(CharSequence smiles) throws SMILESParser.InvalidSmilesException, Atom.LigancyExceededException, Molecule.InvalidLigandConfigurationException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.getName(smiles);
+            }
+        };
+        try (NomenclatureServer slow = new NomenclatureServer(new InetSocketAddress("localhost", 0), new NameBatcher(1, 8, 1000, cache), 100)) {
+            slow.start();
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + slow.getPort() + "/name?smiles=CCC")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(503, response.statusCode());
+        } finally {
+            release.countDown();
+        }
+    }
+}